@@ -0,0 +1,220 @@
+package ftp_theocomp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Table of the lengths of addition chains of all numbers 1..maxN: shortest chains in exact mode, otherwise upper bounds.
+ * <p>
+ * The table is built by dynamic programming over star chains in increasing order of n: the chain of n is the chain of
+ * its parent followed by n, hence each chain is memoized by one parent link. Every chain of n is extended by the star steps
+ * n + a[j] for all its elements a[j]. Only one chain per number is extended, hence the dynamic programming is a heuristic:
+ * its chains are neither shortest chains nor shortest star chains in general. For 7 to 8% of the numbers up to 6000
+ * they are one step too long.
+ * In exact mode, numbers whose star chain is longer than the lower bound are searched with Additionsketten, limited to
+ * chains shorter than the star chain. The failing searches below l(n) cannot be avoided, hence exact mode is practical
+ * for a few thousand numbers only: on a single core maxN = 3000 takes about 6 s and maxN = 6000 about 32 s, and the
+ * time grows about fivefold per doubling of maxN.
+ * <p>
+ * Each length is stored as l(n) - lambda(n) (number of small steps, lambda = floor(log2 n)) in a nibble.
+ * The table can be saved and memory mapped: 4 bytes magic, 4 bytes maxN, (maxN + 2)/2 bytes nibbles (n even: low nibble).
+ */
+public class AdditionChainTable {
+
+    private static final int MAGIC = 0x41434c54;    // "ACLT"
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_SMALL_STEPS = 15;
+
+    private final int maxN;
+    private final ByteBuffer nibbles;               // absolute access only, position is never changed
+
+    private AdditionChainTable(int maxN, ByteBuffer nibbles) {
+        this.maxN = maxN;
+        this.nibbles = nibbles;
+    }
+
+    /**
+     * Computes the table with the common fork/join pool
+     *
+     * @param maxN largest number of the table
+     * @param exact true: shortest chains, false: upper bounds by the star chains of the dynamic programming
+     * @return table
+     */
+    public static AdditionChainTable compute(int maxN, boolean exact) {
+        return compute(maxN, exact, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the table
+     *
+     * @param maxN largest number of the table
+     * @param exact true: shortest chains, false: upper bounds by the star chains of the dynamic programming
+     * @param pool fork/join pool of the exact search
+     * @return table
+     */
+    public static AdditionChainTable compute(int maxN, boolean exact, ForkJoinPool pool) {
+        if (maxN < 1 || maxN == Integer.MAX_VALUE) throw new IllegalArgumentException("invalid maxN: " + maxN);
+
+        final byte[] length = new byte[maxN + 1];           // length of the best chain found so far
+        final int[] parent = new int[maxN + 1];             // chain of n = chain of parent[n], n
+        final HashMap<Integer, int[]> explicit = new HashMap<>();   // chains found by the search, not star chains in general
+        final int[] chain = new int[64];
+        final ByteBuffer nibbles = ByteBuffer.allocate(maxN/2 + 1);
+
+        for (int n = 2; n <= maxN; n++) length[n] = Byte.MAX_VALUE;
+
+        for (int n = 1; n <= maxN; n++) {
+            if (exact && n > 1 && length[n] > Additionsketten.lowerBound(n)) {
+                final int[] c = Additionsketten.calculateChain(n, Additionsketten.lowerBound(n), length[n] - 1, pool);
+                if (c != null) {
+                    explicit.put(n, c);
+                    length[n] = (byte)(c.length - 1);
+                }
+            }
+            setNibble(nibbles, n, length[n] - lambda(n));
+
+            // star steps
+            final int len = chainOf(n, parent, explicit, chain);
+            final byte next = (byte)(length[n] + 1);
+            for (int j = 0; j < len; j++) {
+                final long m = (long)n + chain[j];
+                if (m <= maxN && next < length[(int)m]) {
+                    length[(int)m] = next;
+                    parent[(int)m] = n;
+                }
+            }
+        }
+        return new AdditionChainTable(maxN, nibbles);
+    }
+
+    /**
+     * Memory maps a saved table
+     *
+     * @param file table file
+     * @return table
+     * @throws IOException
+     */
+    public static AdditionChainTable load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.BIG_ENDIAN);
+
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) throw new IOException("not an addition chain table: " + file);
+            final int maxN = buffer.getInt(4);
+            if (maxN < 1 || buffer.capacity() < HEADER_SIZE + maxN/2 + 1) throw new IOException("truncated addition chain table: " + file);
+
+            buffer.position(HEADER_SIZE);
+            return new AdditionChainTable(maxN, buffer.slice());
+        }
+    }
+
+    /**
+     * Saves the table
+     *
+     * @param file table file
+     * @throws IOException
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            final ByteBuffer data = nibbles.duplicate();
+
+            header.putInt(MAGIC).putInt(maxN).flip();
+            data.clear().limit(maxN/2 + 1);
+            while (header.hasRemaining()) channel.write(header);
+            while (data.hasRemaining()) channel.write(data);
+        }
+    }
+
+    /**
+     * @return largest number of the table
+     */
+    public int getMaxN() {
+        return maxN;
+    }
+
+    /**
+     * Length of the addition chain of n in O(1) time: shortest in exact mode, otherwise an upper bound
+     *
+     * @param n 1 <= n <= maxN
+     * @return length
+     */
+    public int length(int n) {
+        if (n < 1 || n > maxN) throw new IndexOutOfBoundsException("n out of range: " + n);
+        return lambda(n) + getNibble(nibbles, n);
+    }
+
+    /**
+     * Lengths of the addition chains of the numbers from, from + 1, ..., from + count - 1
+     *
+     * @param from first number
+     * @param count number of lengths
+     * @param result receives the lengths
+     * @param offset start index in result
+     */
+    public void lengths(int from, int count, int[] result, int offset) {
+        if (from < 1 || count < 0 || count > maxN - from + 1) throw new IndexOutOfBoundsException("range out of table: " + from + ", " + count);
+
+        for (int i = 0; i < count; i++) {
+            result[offset + i] = lambda(from + i) + getNibble(nibbles, from + i);
+        }
+    }
+
+    /**
+     * Lengths of the addition chains of the given numbers
+     *
+     * @param n numbers, 1 <= n[i] <= maxN
+     * @param result receives the lengths
+     */
+    public void lengths(int[] n, int[] result) {
+        for (int i = 0; i < n.length; i++) {
+            result[i] = length(n[i]);
+        }
+    }
+
+    private static int lambda(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n);
+    }
+
+    private static int getNibble(ByteBuffer nibbles, int n) {
+        final int b = nibbles.get(n >>> 1);
+        return ((n & 1) == 0) ? b & 0xf : b >>> 4 & 0xf;
+    }
+
+    private static void setNibble(ByteBuffer nibbles, int n, int value) {
+        if (value > MAX_SMALL_STEPS) throw new IllegalStateException("too many small steps for " + n + ": " + value);
+
+        final int b = nibbles.get(n >>> 1);
+        nibbles.put(n >>> 1, (byte)(((n & 1) == 0) ? (b & 0xf0) | value : (b & 0x0f) | value << 4));
+    }
+
+    /**
+     * Writes the memoized chain of n to chain
+     *
+     * @return length of the chain + 1
+     */
+    private static int chainOf(int n, int[] parent, HashMap<Integer, int[]> explicit, int[] chain) {
+        // walk up the parent links to the root or to an explicit chain, then fill in from the front
+        int len = 0;
+        int m = n;
+        int[] base = null;
+
+        while (m > 1 && (explicit.isEmpty() || (base = explicit.get(m)) == null)) {
+            len++;
+            m = parent[m];
+        }
+        final int baseLen = (base != null) ? base.length : 1;
+        if (base != null) System.arraycopy(base, 0, chain, 0, baseLen);
+        else chain[0] = 1;
+
+        for (int i = baseLen + len - 1, k = n; i >= baseLen; i--, k = parent[k]) {
+            chain[i] = k;
+        }
+        return baseLen + len;
+    }
+}
@@ -1,33 +1,278 @@
 package ftp_theocomp;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Created by n0daft on 17.11.2014.
+ *
+ * Search engine for shortest addition chains 1 = a[0] < a[1] < ... < a[r] = n with a[i] = a[j] + a[k], j, k < i.
+ * <p>
+ * Iterative deepening depth-first search: the length limit starts at a lower bound and is increased until a chain is found.
+ * Pruning:
+ * - lower bound: l(n) >= lambda(n) + 1 if v(n) >= 2, + 2 if v(n) >= 3, + 3 if v(n) >= 5
+ *   (lambda = floor(log2 n), v = number of one bits)
+ * - doubling bound: a[i]*2^(limit - i) >= n, since each step at most doubles the last element
+ * - Thurber's bound: unless n = a[i]*2^r with r = limit - i, one of the remaining steps is no doubling, hence
+ *   n <= (a[i] + a[i-1])*2^(r-1) if 2^(r-1) divides n, otherwise n <= 3*a[i]*2^(r-2)
+ * - the last element is checked directly as sum of two chain elements
+ * The upper levels of the search tree, down to half the length limit, are explored by fork/join tasks; the pool balances
+ * them by work stealing. A task forks its subtrees only while its worker has few surplus tasks queued, hence
+ * there are enough tasks for idle workers to steal, also of the uneven subtrees below 1, 2, 4 and 1, 2, 3.
+ * <p>
+ * Limits: the search is exponential in the chain length, and the searches of the lengths below l(n) that fail dominate.
+ * Each additional step costs about a factor of 2 to 3. On a single core n = 11231 (length 18) takes about 3 s,
+ * n = 18287 (length 19) about 16 s and n = 34303 (length 20) about 39 s; with p cores the time shrinks by up to
+ * a factor of p. Numbers needing more than 20 steps, i.e. beyond about 2^15, may take many minutes.
+ * For tables use AdditionChainTable.
  */
 public class Additionsketten {
 
+    private static final int SEQUENTIAL_DEPTH = 4;      // subtrees of at most this height are searched sequentially
+    private static final int SURPLUS_TASKS = 4;         // a task forks while fewer surplus tasks are queued in its worker
 
+    /**
+     * Computes a shortest addition chain of n with the common fork/join pool
+     *
+     * @param n positive number
+     * @return shortest addition chain: 1, ..., n
+     */
+    public static int[] calculateChain(int n) {
+        return calculateChain(n, ForkJoinPool.commonPool());
+    }
 
-    public static Integer[] calculateNumber(int n){
-        int bound = n%2 == 0 ? n/2 : (n+1)/2;
+    /**
+     * Computes a shortest addition chain of n
+     *
+     * @param n positive number
+     * @param pool fork/join pool of the search
+     * @return shortest addition chain: 1, ..., n
+     */
+    public static int[] calculateChain(int n, ForkJoinPool pool) {
+        if (n < 1) throw new IllegalArgumentException("n must be positive: " + n);
+        if (n == 1) return new int[]{1};
 
-        int x0 = 0;
-        int x1 = 1;
+        final int[] chain = calculateChain(n, lowerBound(n), binaryLength(n) - 1, pool);
+        return (chain != null) ? chain : binaryChain(n);
+    }
 
-        // We already did one iteration theoretically.
-        int count = 1;
+    /**
+     * Computes a shortest addition chain of n with a length within given bounds
+     *
+     * @param n number > 1
+     * @param minLength lower bound of the length
+     * @param maxLength upper bound of the length
+     * @param pool fork/join pool of the search
+     * @return shortest addition chain: 1, ..., n or null if there is no chain of length at most maxLength
+     */
+    static int[] calculateChain(int n, int minLength, int maxLength, ForkJoinPool pool) {
+        for (int limit = Math.max(1, minLength); limit <= maxLength; limit++) {
+            final AtomicReference<int[]> result = new AtomicReference<>();
+            final int[] chain = new int[limit + 1];
 
-        for(int i=1; i<bound; i++){
+            chain[0] = 1;
+            pool.invoke(new SearchTask(n, limit, chain, 1, result));
+            if (result.get() != null) return result.get();
+        }
+        return null;
+    }
 
-            x0 = x1;
-            x1 = x1+ 1;
+    /**
+     * Lower bound of the length of addition chains of n
+     *
+     * @param n positive number
+     * @return lower bound
+     */
+    public static int lowerBound(int n) {
+        final int lambda = 31 - Integer.numberOfLeadingZeros(n);
+        final int v = Integer.bitCount(n);
 
-            count++;
+        return lambda + (v >= 2 ? 1 : 0) + (v >= 3 ? 1 : 0) + (v >= 5 ? 1 : 0);
+    }
 
-        }
+    /**
+     * Length of the chain of the binary method: lambda(n) + v(n) - 1
+     */
+    static int binaryLength(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n) + Integer.bitCount(n) - 1;
+    }
 
-        int calculatedNumber = (n%2 == 0) ? x1+x1 : x0 + x1;
+    /**
+     * Chain of the binary method (square and multiply from the left)
+     */
+    private static int[] binaryChain(int n) {
+        final int[] chain = new int[binaryLength(n) + 1];
+        int len = 0, a = 1;
 
-        return new Integer[]{calculatedNumber, count};
+        chain[len++] = a;
+        for (int bit = 30 - Integer.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            a += a;
+            chain[len++] = a;
+            if ((n >>> bit & 1) != 0) {
+                a++;
+                chain[len++] = a;
+            }
+        }
+        return chain;
     }
 
+    /**
+     * Depth-first search below a chain prefix a[0..depth-1]
+     */
+    private static class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int n, limit;
+        private final int[] chain;
+        private final int depth;
+        private final AtomicReference<int[]> result;
+
+        private SearchTask(int n, int limit, int[] chain, int depth, AtomicReference<int[]> result) {
+            this.n = n;
+            this.limit = limit;
+            this.chain = chain;
+            this.depth = depth;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            // adaptive split: fork down to half the limit while the worker's queue runs short of tasks to steal
+            if (limit - depth <= SEQUENTIAL_DEPTH || 2*depth > limit || getSurplusQueuedTaskCount() >= SURPLUS_TASKS) {
+                search(chain, depth);
+                return;
+            }
+
+            final int[] candidates = candidates(chain, depth);
+            final SearchTask[] tasks = new SearchTask[candidates.length];
+            int cnt = 0;
+
+            for (int c : candidates) {
+                if (result.get() != null) break;
+
+                if (c == n) {
+                    chain[depth] = c;
+                    result.compareAndSet(null, Arrays.copyOf(chain, depth + 1));
+                    return;
+                }
+                if (depth < limit - 1 && isReachable(n, c, chain[depth - 1], limit - depth)) {
+                    final int[] prefix = chain.clone();
+                    prefix[depth] = c;
+                    tasks[cnt++] = new SearchTask(n, limit, prefix, depth + 1, result);
+                }
+            }
+            invokeAll(Arrays.copyOf(tasks, cnt));
+        }
+
+        /**
+         * Sequential depth-first search
+         *
+         * @return true if a chain has been found
+         */
+        private boolean search(int[] a, int i) {
+            if (result.get() != null) return true;
+
+            final int last = a[i - 1];
+
+            // last step: n must be the sum of two chain elements
+            if (i == limit) {
+                for (int j = i - 1, k = 0; k <= j; ) {
+                    final int s = a[j] + a[k];
+
+                    if (s == n) {
+                        a[i] = n;
+                        result.compareAndSet(null, Arrays.copyOf(a, i + 1));
+                        return true;
+                    }
+                    if (s > n) j--;
+                    else k++;
+                }
+                return false;
+            }
+
+            // candidates a[j] + a[k] in decreasing order: j decreasing, for each j all k <= j
+            for (int j = i - 1; j >= 0 && 2*a[j] > last; j--) {
+                for (int k = j; k >= 0; k--) {
+                    final int c = a[j] + a[k];
+
+                    if (c <= last) break;
+                    if (c > n) continue;
+                    if (j < i - 1 && isDuplicate(a, i, j, c)) continue;
+
+                    // doubling bound and Thurber's bound
+                    if (((long)c << (limit - i)) < n) break;
+                    if (!isReachable(n, c, last, limit - i)) continue;
+                    if (c == n) {
+                        a[i] = n;
+                        result.compareAndSet(null, Arrays.copyOf(a, i + 1));
+                        return true;
+                    }
+                    a[i] = c;
+                    if (i == limit - 1) {
+                        // last step without recursion: n = c + c or n = c + a[k]
+                        if (n == 2*c || Arrays.binarySearch(a, 0, i, n - c) >= 0) {
+                            a[limit] = n;
+                            result.compareAndSet(null, Arrays.copyOf(a, limit + 1));
+                            return true;
+                        }
+                    } else if (search(a, i + 1)) return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Tests whether n can be reached in r steps from a chain with largest elements c > b.
+         * After the last non-doubling step only doublings follow: n = v*2^d with v made by that step in r - d steps.
+         * At best v = (c + b)*2^(r-d-1) if d = r - 1, since it is the first step, otherwise v = 3*c*2^(r-d-2) by doublings
+         * and one step m + m/2 last.
+         *
+         * @return false if n cannot be reached
+         */
+        private static boolean isReachable(int n, int c, int b, int r) {
+            if (((long)c << r) == n) return true;
+            if (r == 1) return c + b >= n;
+            if (Integer.numberOfTrailingZeros(n) >= r - 1 && ((long)(c + b) << (r - 1)) >= n) return true;
+            return (3L*c << (r - 2)) >= n;
+        }
+
+        /**
+         * @return true if c is also the sum of a[j'] + a[k'] with j < j' < i, i.e. it has been tried before
+         */
+        private static boolean isDuplicate(int[] a, int i, int j, int c) {
+            for (int jj = i - 1; jj > j; jj--) {
+                final int k = c - a[jj];
+
+                if (k > a[jj]) break;
+                if (k >= 1 && Arrays.binarySearch(a, 0, jj + 1, k) >= 0) return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return distinct candidates of a[i] in decreasing order
+         */
+        private int[] candidates(int[] a, int i) {
+            final int last = a[i - 1];
+            int[] c = new int[i*(i + 1)/2];
+            int cnt = 0;
+
+            for (int j = 0; j < i; j++) {
+                for (int k = 0; k <= j; k++) {
+                    final int s = a[j] + a[k];
+                    if (s > last && s <= n) c[cnt++] = s;
+                }
+            }
+            Arrays.sort(c, 0, cnt);
+
+            int[] distinct = new int[cnt];
+            int d = 0;
+            for (int x = cnt - 1; x >= 0; x--) {
+                if (d == 0 || distinct[d - 1] != c[x]) distinct[d++] = c[x];
+            }
+            return Arrays.copyOf(distinct, d);
+        }
+    }
 }
@@ -1,14 +1,49 @@
 package ftp_theocomp;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 /**
  * Created by n0daft on 17.11.2014.
+ *
+ * Usage: Starter [n]
+ *        Starter table maxN file [exact]   (loads the table if the file exists, otherwise computes and saves it)
  */
 public class Starter {
 
-    public static void main(String[] args){
+    public static void main(String[] args) throws IOException {
+
+        if (args.length >= 3 && args[0].equals("table")) {
+            int maxN = Integer.parseInt(args[1]);
+            Path file = Paths.get(args[2]);
+
+            long tStart = System.currentTimeMillis();
+            AdditionChainTable table;
+            if (Files.exists(file)) {
+                table = AdditionChainTable.load(file);
+            } else {
+                table = AdditionChainTable.compute(maxN, args.length > 3 && Boolean.parseBoolean(args[3]));
+                table.save(file);
+            }
+            long tEnd = System.currentTimeMillis();
+
+            int[] lengths = new int[Math.min(32, table.getMaxN())];
+            table.lengths(1, lengths.length, lengths, 0);
+            System.out.println(String.format("table of %d lengths in %d ms: %s ...", table.getMaxN(), tEnd - tStart, Arrays.toString(lengths)));
+            return;
+        }
+
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 30;
+
+        long tStart = System.currentTimeMillis();
+        int[] chain = Additionsketten.calculateChain(n);
+        long tEnd = System.currentTimeMillis();
 
-        Integer[] result = Additionsketten.calculateNumber(30);
-        System.out.println(String.format("calculated number %d in %d iterations.", result[0], result[1]));
+        System.out.println(String.format("shortest addition chain of %d has length %d: %s", n, chain.length - 1, Arrays.toString(chain)));
+        System.out.println(String.format("%d ms", tEnd - tStart));
 
     }
 }
@@ -1,11 +1,11 @@
 package tsm_alg.ex01;
 
-import com.vividsolutions.jts.algorithm.CGAlgorithms;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LinearRing;
 import com.vividsolutions.jts.util.UniqueCoordinateArrayFilter;
+import tsm_alg.helpers.Predicates;
 
 import java.util.*;
 
@@ -152,7 +152,7 @@ public class ConvexHull2 {
     public boolean makesRightTurn(Coordinate p1, Coordinate p2, Coordinate p3){
 
         // Computes the orientation of p2 to the directed line segment p1-p3
-        int orientation = CGAlgorithms.computeOrientation(p1, p3, p2);
+        int orientation = Predicates.orientationIndex(p1, p3, p2);
         return orientation == 1;
 
     }
@@ -0,0 +1,185 @@
+package tsm_alg.ex01;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the convex hulls of many small point sets at once.
+ * <p>
+ * The point sets are packed into one coordinate buffer: x, y of each point; point set i consists of the points
+ * offsets[i] to offsets[i + 1] - 1. The hulls are returned in the same packed layout.
+ * Chunks of point sets are processed in parallel. Each thread sorts and hulls its point sets in reused thread-local
+ * scratch buffers (Andrew's monotone chain, see StreamingConvexHull), hence there is no allocation per point set.
+ * A hull is written into the output buffer at the position of its input points, the hulls are then compacted.
+ */
+public class ConvexHullBatch {
+	private static final int CHUNK_SIZE = 1024;		// number of point sets per parallel task
+	private static final ThreadLocal<Scratch> s_scratch = ThreadLocal.withInitial(Scratch::new);
+
+	private final double[] m_xy;		// hull vertices: x, y in counterclockwise order, starting at the lowest-leftmost vertex
+	private final int[] m_offsets;		// hull i consists of the vertices m_offsets[i] to m_offsets[i + 1] - 1
+
+	/**
+	 * Thread-local buffers of sorted points and hull vertices
+	 */
+	private static class Scratch {
+		private double[] m_x = new double[64], m_y = new double[64], m_hx = new double[65], m_hy = new double[65];
+
+		private void ensureCapacity(int n) {
+			if (m_x.length < n) {
+				m_x = new double[2*n];
+				m_y = new double[2*n];
+				m_hx = new double[2*n + 1];
+				m_hy = new double[2*n + 1];
+			}
+		}
+	}
+
+	private ConvexHullBatch(double[] xy, int[] offsets) {
+		m_xy = xy;
+		m_offsets = offsets;
+	}
+
+	/**
+	 * Computes the convex hulls of packed point sets
+	 *
+	 * @param xy packed coordinates: x, y of each point
+	 * @param offsets point set i consists of the points offsets[i] to offsets[i + 1] - 1, offsets is non-decreasing
+	 * @return hulls in packed layout
+	 */
+	public static ConvexHullBatch compute(double[] xy, int[] offsets) {
+		final int sets = offsets.length - 1;
+		if (sets < 0) throw new IllegalArgumentException("offsets must not be empty");
+		if (offsets[0] < 0 || 2*offsets[sets] > xy.length) throw new IllegalArgumentException("offsets out of coordinate buffer");
+
+		// hull of point set i at offsets[i], its number of vertices in counts[i]
+		final double[] hulls = new double[2*offsets[sets]];
+		final int[] counts = new int[sets];
+		final int chunks = (sets + CHUNK_SIZE - 1)/CHUNK_SIZE;
+
+		IntStream.range(0, chunks).parallel().forEach((c) -> {
+			final Scratch scratch = s_scratch.get();
+
+			for (int i = c*CHUNK_SIZE, end = Math.min(sets, (c + 1)*CHUNK_SIZE); i < end; i++) {
+				counts[i] = computeHull(xy, offsets[i], offsets[i + 1], hulls, scratch);
+			}
+		});
+
+		// compaction
+		final int[] resultOffsets = new int[sets + 1];
+		for (int i = 0; i < sets; i++) {
+			resultOffsets[i + 1] = resultOffsets[i] + counts[i];
+		}
+		final double[] result = (resultOffsets[sets] == offsets[sets]) ? hulls : new double[2*resultOffsets[sets]];
+		if (result != hulls) {
+			for (int i = 0; i < sets; i++) {
+				System.arraycopy(hulls, 2*offsets[i], result, 2*resultOffsets[i], 2*counts[i]);
+			}
+		}
+		return new ConvexHullBatch(result, resultOffsets);
+	}
+
+	/**
+	 * Computes the hull of the points from to to - 1 and writes its vertices to hulls at position from
+	 *
+	 * @return number of hull vertices
+	 */
+	private static int computeHull(double[] xy, int from, int to, double[] hulls, Scratch scratch) {
+		final int n = to - from;
+		if (n <= 0) {
+			if (n < 0) throw new IllegalArgumentException("offsets must be non-decreasing");
+			return 0;
+		}
+
+		scratch.ensureCapacity(n);
+		final double[] x = scratch.m_x, y = scratch.m_y, hx = scratch.m_hx, hy = scratch.m_hy;
+		for (int i = 0; i < n; i++) {
+			x[i] = xy[2*(from + i)];
+			y[i] = xy[2*(from + i) + 1];
+		}
+		StreamingConvexHull.sort(x, y, 0, n - 1);
+
+		final int h = StreamingConvexHull.monotoneChain(x, y, n, hx, hy);
+		for (int i = 0; i < h; i++) {
+			hulls[2*(from + i)] = hx[i];
+			hulls[2*(from + i) + 1] = hy[i];
+		}
+		return h;
+	}
+
+	/**
+	 * @return number of hulls
+	 */
+	public int getNumHulls() {
+		return m_offsets.length - 1;
+	}
+
+	/**
+	 * @return packed hull vertices: x, y of each vertex
+	 */
+	public double[] getCoordinates() {
+		return m_xy;
+	}
+
+	/**
+	 * @return hull i consists of the vertices offsets[i] to offsets[i + 1] - 1
+	 */
+	public int[] getOffsets() {
+		return m_offsets;
+	}
+
+	/**
+	 * @param i hull index
+	 * @return number of vertices of hull i
+	 */
+	public int getNumVertices(int i) {
+		return m_offsets[i + 1] - m_offsets[i];
+	}
+
+	/**
+	 * Creates the geometry of hull i
+	 *
+	 * @param i hull index
+	 * @param factory geometry factory
+	 * @return if the convex hull contains 3 or more points, a {@link com.vividsolutions.jts.geom.Polygon};
+	 *         2 points, a {@link com.vividsolutions.jts.geom.LineString}; 1 point, a {@link com.vividsolutions.jts.geom.Point}; 0
+	 *         points, an empty {@link com.vividsolutions.jts.geom.GeometryCollection}.
+	 */
+	public Geometry getGeometry(int i, GeometryFactory factory) {
+		final int from = m_offsets[i], h = getNumVertices(i);
+
+		if (h == 0) {
+			return factory.createGeometryCollection(null);
+		}
+		if (h == 1) {
+			return factory.createPoint(new Coordinate(m_xy[2*from], m_xy[2*from + 1]));
+		}
+
+		Coordinate[] ring = new Coordinate[(h == 2) ? 2 : h + 1];
+		for (int k = 0; k < h; k++) {
+			ring[k] = new Coordinate(m_xy[2*(from + k)], m_xy[2*(from + k) + 1]);
+		}
+		if (h == 2) {
+			return factory.createLineString(ring);
+		}
+		ring[h] = new Coordinate(ring[0]);
+		return factory.createPolygon(factory.createLinearRing(ring), null);
+	}
+
+	/**
+	 * Creates the geometries of all hulls
+	 *
+	 * @param factory geometry factory
+	 * @return geometries
+	 */
+	public Geometry[] getGeometries(GeometryFactory factory) {
+		final Geometry[] geometries = new Geometry[getNumHulls()];
+
+		Arrays.parallelSetAll(geometries, (i) -> getGeometry(i, factory));
+		return geometries;
+	}
+}
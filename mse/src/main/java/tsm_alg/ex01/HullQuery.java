@@ -0,0 +1,286 @@
+package tsm_alg.ex01;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import tsm_alg.helpers.Predicates;
+
+/**
+ * Queries on a convex hull: point containment and rotating calipers metrics.
+ * <p>
+ * The hull vertices are stored in counterclockwise order starting at the bottom-left vertex (lexicographic minimum).
+ * The lower chain runs from there to the bottom-right vertex with increasing x, the upper chain from the top-right
+ * to the top-left vertex with decreasing x. Containment is decided by binary search in both chains in O(log h) time,
+ * or by a merge-like scan in O(n + h) time for n query points sorted by x.
+ * Diameter, width and the minimum-area enclosing rectangle are computed by rotating calipers in O(h) time.
+ * No query allocates objects.
+ * <p>
+ * G. Toussaint: Solving Geometric Problems with the Rotating Calipers, 1983
+ */
+public class HullQuery {
+	private final double[] m_x, m_y;	// vertices in counterclockwise order, m_x[n] = m_x[0]
+	private final int m_n;				// number of vertices
+	private final int m_br;				// index of the bottom-right vertex: end of the lower chain
+	private final int m_tr, m_tl;		// indices of the top-right and top-left vertex: upper chain, m_tl <= n
+
+	/**
+	 * Creates new hull query of packed hull vertices, e.g. a hull of ConvexHullBatch
+	 *
+	 * @param xy packed coordinates: x, y of each vertex, vertices of a strictly convex polygon in counterclockwise order
+	 * @param from index of the first vertex
+	 * @param to index after the last vertex
+	 */
+	public HullQuery(double[] xy, int from, int to) {
+		this(xy, from, to - from, false);
+	}
+
+	/**
+	 * Creates new hull query of the coordinates of a convex hull, e.g. the result of ConvexHull2
+	 *
+	 * @param hull convex polygon, line string or point; closed rings in any orientation
+	 */
+	public HullQuery(Geometry hull) {
+		this(pack(hull.getCoordinates()), 0, closedLength(hull.getCoordinates()), true);
+	}
+
+	private HullQuery(double[] xy, int from, int n, boolean orient) {
+		if (n < 1) throw new IllegalArgumentException("empty hull");
+		m_n = n;
+		m_x = new double[n + 1];
+		m_y = new double[n + 1];
+
+		// start at the lexicographic minimum
+		int start = 0;
+		for (int i = 1; i < n; i++) {
+			final double x = xy[2*(from + i)], y = xy[2*(from + i) + 1];
+			final double sx = xy[2*(from + start)], sy = xy[2*(from + start) + 1];
+			if (x < sx || (x == sx && y < sy)) start = i;
+		}
+
+		// reverse clockwise input
+		double area = 0;
+		if (orient) {
+			for (int i = 0; i < n; i++) {
+				final int j = (i + 1)%n;
+				area += xy[2*(from + i)]*xy[2*(from + j) + 1] - xy[2*(from + j)]*xy[2*(from + i) + 1];
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			final int k = from + ((area < 0) ? (start - i + n)%n : (start + i)%n);
+			m_x[i] = xy[2*k];
+			m_y[i] = xy[2*k + 1];
+		}
+		m_x[n] = m_x[0];
+		m_y[n] = m_y[0];
+
+		// bottom-right: first vertex with maximum x, top-right: last one; top-left: last vertex with minimum x
+		int br = 0;
+		for (int i = 1; i < n; i++) {
+			if (m_x[i] > m_x[br]) br = i;
+		}
+		int tr = br;
+		while (tr + 1 < n && m_x[tr + 1] == m_x[br]) tr++;
+		m_br = br;
+		m_tr = tr;
+		m_tl = (n > 1 && m_x[n - 1] == m_x[0]) ? n - 1 : n;
+	}
+
+	private static double[] pack(Coordinate[] pts) {
+		final double[] xy = new double[2*pts.length];
+
+		for (int i = 0; i < pts.length; i++) {
+			xy[2*i] = pts[i].x;
+			xy[2*i + 1] = pts[i].y;
+		}
+		return xy;
+	}
+
+	/**
+	 * @return number of coordinates without the closing coordinate of a ring
+	 */
+	private static int closedLength(Coordinate[] pts) {
+		return (pts.length > 1 && pts[0].equals2D(pts[pts.length - 1])) ? pts.length - 1 : pts.length;
+	}
+
+	/**
+	 * @return number of hull vertices
+	 */
+	public int getNumVertices() {
+		return m_n;
+	}
+
+	/**
+	 * Tests if a point lies inside or on the boundary of the hull in O(log h) time
+	 *
+	 * @param px
+	 * @param py
+	 * @return true if the point is contained
+	 */
+	public boolean contains(double px, double py) {
+		if (px < m_x[0] || px > m_x[m_br]) return false;
+		if (m_n < 3) return containsDegenerate(px, py);
+
+		// lower chain: segment lo-(lo + 1) with x[lo] <= px <= x[lo + 1]
+		int lo = 0, hi = m_br;
+		while (hi - lo > 1) {
+			final int mid = (lo + hi) >>> 1;
+			if (m_x[mid] <= px) lo = mid;
+			else hi = mid;
+		}
+		if (Predicates.orientationIndex(m_x[lo], m_y[lo], m_x[lo + 1], m_y[lo + 1], px, py) < 0) return false;
+
+		// upper chain: segment lo-(lo + 1) with x[lo] >= px >= x[lo + 1]
+		lo = m_tr;
+		hi = m_tl;
+		while (hi - lo > 1) {
+			final int mid = (lo + hi) >>> 1;
+			if (m_x[mid] >= px) lo = mid;
+			else hi = mid;
+		}
+		return Predicates.orientationIndex(m_x[lo], m_y[lo], m_x[lo + 1], m_y[lo + 1], px, py) >= 0;
+	}
+
+	/**
+	 * Tests if points sorted by x lie inside or on the boundary of the hull in O(n + h) time
+	 *
+	 * @param xy packed coordinates: x, y of each point, sorted by x
+	 * @param n number of points
+	 * @param result receives the containment of each point
+	 */
+	public void contains(double[] xy, int n, boolean[] result) {
+		int i = 0, j = m_tl;	// current segment of the lower chain: i-(i + 1), of the upper chain: (j - 1)-j
+		double prev = Double.NEGATIVE_INFINITY;
+
+		for (int q = 0; q < n; q++) {
+			final double px = xy[2*q], py = xy[2*q + 1];
+
+			if (px < prev) throw new IllegalArgumentException("points are not sorted by x");
+			prev = px;
+			if (px < m_x[0] || px > m_x[m_br]) {
+				result[q] = false;
+			} else if (m_n < 3) {
+				result[q] = containsDegenerate(px, py);
+			} else {
+				while (i + 1 < m_br && m_x[i + 1] < px) i++;
+				while (j - 1 > m_tr && m_x[j - 1] < px) j--;
+				result[q] = Predicates.orientationIndex(m_x[i], m_y[i], m_x[i + 1], m_y[i + 1], px, py) >= 0
+						&& Predicates.orientationIndex(m_x[j - 1], m_y[j - 1], m_x[j], m_y[j], px, py) >= 0;
+			}
+		}
+	}
+
+	/**
+	 * Containment in a point or segment hull
+	 */
+	private boolean containsDegenerate(double px, double py) {
+		if (m_n == 1) return px == m_x[0] && py == m_y[0];
+		return Predicates.orientationIndex(m_x[0], m_y[0], m_x[1], m_y[1], px, py) == 0
+				&& py >= Math.min(m_y[0], m_y[1]) && py <= Math.max(m_y[0], m_y[1]);
+	}
+
+	/**
+	 * Largest distance of two hull vertices by rotating calipers in O(h) time
+	 *
+	 * @return diameter
+	 */
+	public double getDiameter() {
+		if (m_n == 1) return 0;
+		if (m_n == 2) return Math.hypot(m_x[1] - m_x[0], m_y[1] - m_y[0]);
+
+		double maxDist2 = 0;
+		for (int i = 0, j = 1; i < m_n; i++) {
+			// antipodal vertex of edge i-(i + 1)
+			while (area2(i, j + 1) > area2(i, j)) j = (j + 1)%m_n;
+			maxDist2 = Math.max(maxDist2, Math.max(dist2(i, j), dist2(i + 1, j)));
+		}
+		return Math.sqrt(maxDist2);
+	}
+
+	/**
+	 * Smallest distance of two parallel lines enclosing the hull by rotating calipers in O(h) time
+	 *
+	 * @return width
+	 */
+	public double getWidth() {
+		if (m_n < 3) return 0;
+
+		double minWidth = Double.POSITIVE_INFINITY;
+		for (int i = 0, j = 1; i < m_n; i++) {
+			while (area2(i, j + 1) > area2(i, j)) j = (j + 1)%m_n;
+			minWidth = Math.min(minWidth, area2(i, j)/Math.sqrt(dist2(i, i + 1)));
+		}
+		return minWidth;
+	}
+
+	/**
+	 * Minimum-area rectangle enclosing the hull by rotating calipers in O(h) time. One side of the rectangle
+	 * is collinear with a hull edge.
+	 *
+	 * @param corners receives the corners x0, y0, ..., x3, y3 in counterclockwise order if not null
+	 * @return area of the rectangle
+	 */
+	public double getMinAreaRectangle(double[] corners) {
+		if (m_n < 3) {
+			if (corners != null) {
+				for (int c = 0; c < 4; c++) {
+					final int v = (c < 2 || m_n == 1) ? 0 : 1;
+					corners[2*c] = m_x[v];
+					corners[2*c + 1] = m_y[v];
+				}
+			}
+			return 0;
+		}
+
+		double minArea = Double.POSITIVE_INFINITY;
+		int j = 1, k = 1, l = 1;	// top, right and left vertex of the calipers
+		for (int i = 0; i < m_n; i++) {
+			final double len = Math.sqrt(dist2(i, i + 1));
+			final double ux = (m_x[i + 1] - m_x[i])/len, uy = (m_y[i + 1] - m_y[i])/len;
+
+			while (project(k + 1, i, ux, uy) > project(k, i, ux, uy)) k = (k + 1)%m_n;
+			if (i == 0) j = k;
+			while (area2(i, j + 1) > area2(i, j)) j = (j + 1)%m_n;
+			if (i == 0) l = j;
+			while (project(l + 1, i, ux, uy) < project(l, i, ux, uy)) l = (l + 1)%m_n;
+
+			final double minU = project(l, i, ux, uy), maxU = project(k, i, ux, uy), h = area2(i, j)/len;
+			final double area = (maxU - minU)*h;
+
+			if (area < minArea) {
+				minArea = area;
+				if (corners != null) {
+					// base edge from minU to maxU, then up by h along the left normal (-uy, ux)
+					corners[0] = m_x[i] + minU*ux;
+					corners[1] = m_y[i] + minU*uy;
+					corners[2] = m_x[i] + maxU*ux;
+					corners[3] = m_y[i] + maxU*uy;
+					corners[4] = corners[2] - h*uy;
+					corners[5] = corners[3] + h*ux;
+					corners[6] = corners[0] - h*uy;
+					corners[7] = corners[1] + h*ux;
+				}
+			}
+		}
+		return minArea;
+	}
+
+	/**
+	 * @return twice the area of the triangle of edge i-(i + 1) and vertex j
+	 */
+	private double area2(int i, int j) {
+		j %= m_n;
+		return (m_x[i + 1] - m_x[i])*(m_y[j] - m_y[i]) - (m_y[i + 1] - m_y[i])*(m_x[j] - m_x[i]);
+	}
+
+	private double dist2(int i, int j) {
+		final double dx = m_x[j] - m_x[i], dy = m_y[j] - m_y[i];
+		return dx*dx + dy*dy;
+	}
+
+	/**
+	 * @return projection of vertex j relative to vertex i onto the unit direction u
+	 */
+	private double project(int j, int i, double ux, double uy) {
+		j %= m_n;
+		return (m_x[j] - m_x[i])*ux + (m_y[j] - m_y[i])*uy;
+	}
+}
@@ -0,0 +1,570 @@
+package tsm_alg.ex01;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import tsm_alg.helpers.VectorHelper;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the convex hull of a 3D point set by the quickhull algorithm.
+ * <p>
+ * The hull is a triangulated half-edge mesh stored in primitive arrays. Each face keeps the list of points outside of it.
+ * In each step the furthest outside point of a face (eye point) is added: the faces visible from the eye point are removed
+ * by a depth-first search, which yields the horizon edges in counterclockwise order, and the horizon is connected to the eye point
+ * by new faces. The outside points of the removed faces are redistributed to the new faces.
+ * The initial partitioning of all points to the faces of the start tetrahedron runs in parallel for large point sets.
+ * Points within a distance tolerance (derived from the coordinate range) of a face are considered to be on the face.
+ * <p>
+ * C. B. Barber, D. P. Dobkin, H. Huhdanpaa: The Quickhull Algorithm for Convex Hulls, 1996
+ */
+public class QuickHull3D {
+	private static final double DOUBLE_PREC = 0x1p-52;
+	private static final int PARALLEL_CHUNK_SIZE = 1 << 14;		// number of points per task of the initial partitioning
+
+	private final double[] m_xyz;		// points: x, y, z
+	private final int m_n;				// number of points
+	private double m_tolerance;			// distance tolerance
+
+	// half-edges: head vertex, next edge of the face, twin edge, incident face
+	private int[] m_eHead, m_eNext, m_eTwin, m_eFace;
+	private int m_edges;
+
+	// faces: first edge, unit normal, offset, outside points (linked by m_pNext), furthest outside point
+	private int[] m_fEdge, m_fOutside, m_fFar;
+	private double[] m_fnx, m_fny, m_fnz, m_fd, m_fFarDist;
+	private boolean[] m_fDeleted;
+	private int m_faces;
+
+	private final int[] m_pNext;		// next point of outside list, -1 = end
+
+	// scratch of one step
+	private final double[] m_normal = new double[3];
+	private int[] m_visible = new int[16], m_horizon = new int[16], m_stackEdge = new int[16], m_stackCount = new int[16];
+	private int m_numVisible, m_numHorizon;
+	private int[] m_pending = new int[16];	// faces with outside points
+	private int m_numPending;
+
+	/**
+	 * Computes the convex hull of n points
+	 *
+	 * @param xyz packed coordinates: x, y, z of each point
+	 * @param n number of points
+	 * @throws IllegalArgumentException if the points are coplanar
+	 */
+	public QuickHull3D(double[] xyz, int n) {
+		if (n < 4) throw new IllegalArgumentException("at least 4 points needed: " + n);
+		if (xyz.length < 3*n) throw new IllegalArgumentException("coordinate array too short");
+		m_xyz = xyz;
+		m_n = n;
+		m_pNext = new int[n];
+
+		final int capacity = 16 + 2*(int)Math.sqrt(n);
+		m_eHead = new int[3*capacity];
+		m_eNext = new int[3*capacity];
+		m_eTwin = new int[3*capacity];
+		m_eFace = new int[3*capacity];
+		m_fEdge = new int[capacity];
+		m_fOutside = new int[capacity];
+		m_fFar = new int[capacity];
+		m_fnx = new double[capacity];
+		m_fny = new double[capacity];
+		m_fnz = new double[capacity];
+		m_fd = new double[capacity];
+		m_fFarDist = new double[capacity];
+		m_fDeleted = new boolean[capacity];
+
+		build();
+	}
+
+	/**
+	 * Computes the convex hull of 3D coordinates
+	 *
+	 * @param pts coordinates with z values
+	 */
+	public QuickHull3D(Coordinate[] pts) {
+		this(pack(pts), pts.length);
+	}
+
+	/**
+	 * Computes the convex hull of all coordinates of a geometry with z values
+	 *
+	 * @param geometry geometry
+	 */
+	public QuickHull3D(Geometry geometry) {
+		this(geometry.getCoordinates());
+	}
+
+	private static double[] pack(Coordinate[] pts) {
+		final double[] xyz = new double[3*pts.length];
+
+		for (int i = 0; i < pts.length; i++) {
+			if (Double.isNaN(pts[i].z)) throw new IllegalArgumentException("coordinate without z value: " + pts[i]);
+			xyz[3*i] = pts[i].x;
+			xyz[3*i + 1] = pts[i].y;
+			xyz[3*i + 2] = pts[i].z;
+		}
+		return xyz;
+	}
+
+	/**
+	 * @return number of hull faces (triangles)
+	 */
+	public int getNumFaces() {
+		int cnt = 0;
+		for (int f = 0; f < m_faces; f++) {
+			if (!m_fDeleted[f]) cnt++;
+		}
+		return cnt;
+	}
+
+	/**
+	 * @return hull triangles: 3 point indices per triangle, counterclockwise seen from outside
+	 */
+	public int[] getTriangles() {
+		final int[] triangles = new int[3*getNumFaces()];
+		int k = 0;
+
+		for (int f = 0; f < m_faces; f++) {
+			if (!m_fDeleted[f]) {
+				final int e = m_fEdge[f];
+				triangles[k++] = m_eHead[e];
+				triangles[k++] = m_eHead[m_eNext[e]];
+				triangles[k++] = m_eHead[m_eNext[m_eNext[e]]];
+			}
+		}
+		return triangles;
+	}
+
+	/**
+	 * @return point indices of the hull vertices in increasing order
+	 */
+	public int[] getVertices() {
+		final boolean[] isVertex = new boolean[m_n];
+		int cnt = 0;
+
+		for (int f = 0; f < m_faces; f++) {
+			if (!m_fDeleted[f]) {
+				for (int i = 0, e = m_fEdge[f]; i < 3; i++, e = m_eNext[e]) {
+					if (!isVertex[m_eHead[e]]) {
+						isVertex[m_eHead[e]] = true;
+						cnt++;
+					}
+				}
+			}
+		}
+
+		final int[] vertices = new int[cnt];
+		for (int p = 0, k = 0; p < m_n; p++) {
+			if (isVertex[p]) vertices[k++] = p;
+		}
+		return vertices;
+	}
+
+	/**
+	 * @return volume of the hull
+	 */
+	public double getVolume() {
+		// tetrahedra of the faces with the first hull vertex as apex
+		final int o = 3*m_eHead[m_fEdge[firstFace()]];
+		final double ox = m_xyz[o], oy = m_xyz[o + 1], oz = m_xyz[o + 2];
+		double vol = 0;
+
+		for (int f = 0; f < m_faces; f++) {
+			if (!m_fDeleted[f]) {
+				final int e = m_fEdge[f];
+				final int a = 3*m_eHead[e], b = 3*m_eHead[m_eNext[e]], c = 3*m_eHead[m_eNext[m_eNext[e]]];
+
+				vol += VectorHelper.det(
+						m_xyz[a] - ox, m_xyz[a + 1] - oy, m_xyz[a + 2] - oz,
+						m_xyz[b] - ox, m_xyz[b + 1] - oy, m_xyz[b + 2] - oz,
+						m_xyz[c] - ox, m_xyz[c + 1] - oy, m_xyz[c + 2] - oz);
+			}
+		}
+		return vol/6;
+	}
+
+	/**
+	 * @param factory geometry factory
+	 * @return hull triangles as multi polygon
+	 */
+	public Geometry getGeometry(GeometryFactory factory) {
+		final int[] triangles = getTriangles();
+		final Polygon[] polygons = new Polygon[triangles.length/3];
+
+		for (int t = 0; t < polygons.length; t++) {
+			Coordinate[] ring = new Coordinate[4];
+			for (int i = 0; i < 3; i++) {
+				final int p = 3*triangles[3*t + i];
+				ring[i] = new Coordinate(m_xyz[p], m_xyz[p + 1], m_xyz[p + 2]);
+			}
+			ring[3] = new Coordinate(ring[0]);
+			polygons[t] = factory.createPolygon(factory.createLinearRing(ring), null);
+		}
+		return factory.createMultiPolygon(polygons);
+	}
+
+	/**
+	 * @return distance tolerance
+	 */
+	public double getTolerance() {
+		return m_tolerance;
+	}
+
+	private int firstFace() {
+		int f = 0;
+		while (m_fDeleted[f]) f++;
+		return f;
+	}
+
+	private void build() {
+		// extreme points per axis
+		final int[] min = new int[3], max = new int[3];
+		final double[] absMax = new double[3];
+
+		for (int p = 0; p < m_n; p++) {
+			for (int a = 0; a < 3; a++) {
+				final double v = m_xyz[3*p + a];
+				if (v < m_xyz[3*min[a] + a]) min[a] = p;
+				if (v > m_xyz[3*max[a] + a]) max[a] = p;
+				absMax[a] = Math.max(absMax[a], Math.abs(v));
+			}
+		}
+		m_tolerance = 3*DOUBLE_PREC*(absMax[0] + absMax[1] + absMax[2]);
+
+		// v0, v1: extreme points of the axis with the largest extent
+		int axis = 0;
+		for (int a = 1; a < 3; a++) {
+			if (m_xyz[3*max[a] + a] - m_xyz[3*min[a] + a] > m_xyz[3*max[axis] + axis] - m_xyz[3*min[axis] + axis]) axis = a;
+		}
+		final int v0 = min[axis], v1 = max[axis];
+		if (m_xyz[3*v1 + axis] - m_xyz[3*v0 + axis] <= m_tolerance) throw new IllegalArgumentException("points are coincident");
+
+		// v2: furthest point from line v0-v1
+		final double dx = x(v1) - x(v0), dy = y(v1) - y(v0), dz = z(v1) - z(v0);
+		int v2 = -1;
+		double maxDist = 0;
+		for (int p = 0; p < m_n; p++) {
+			VectorHelper.crossProduct(x(p) - x(v0), y(p) - y(v0), z(p) - z(v0), dx, dy, dz, m_normal);
+			final double d = m_normal[0]*m_normal[0] + m_normal[1]*m_normal[1] + m_normal[2]*m_normal[2];
+			if (d > maxDist) {
+				maxDist = d;
+				v2 = p;
+			}
+		}
+		if (Math.sqrt(maxDist/(dx*dx + dy*dy + dz*dz)) <= m_tolerance) throw new IllegalArgumentException("points are collinear");
+
+		// v3: furthest point from plane v0-v1-v2
+		computeNormal(v0, v1, v2, m_normal);
+		final double nx = m_normal[0], ny = m_normal[1], nz = m_normal[2], d0 = nx*x(v0) + ny*y(v0) + nz*z(v0);
+		int v3 = -1;
+		double maxDist3 = 0;
+		for (int p = 0; p < m_n; p++) {
+			final double d = Math.abs(nx*x(p) + ny*y(p) + nz*z(p) - d0);
+			if (d > maxDist3) {
+				maxDist3 = d;
+				v3 = p;
+			}
+		}
+		if (maxDist3 <= m_tolerance) throw new IllegalArgumentException("points are coplanar");
+
+		// start tetrahedron with outward oriented faces
+		if (nx*x(v3) + ny*y(v3) + nz*z(v3) - d0 > 0) {
+			addTetrahedron(v0, v2, v1, v3);
+		} else {
+			addTetrahedron(v0, v1, v2, v3);
+		}
+
+		partition();
+
+		for (int f = 0; f < m_faces; f++) {
+			if (m_fOutside[f] >= 0) pushPending(f);
+		}
+		while (m_numPending > 0) {
+			final int f = m_pending[--m_numPending];
+			if (!m_fDeleted[f] && m_fOutside[f] >= 0) addPoint(m_fFar[f], f);
+		}
+	}
+
+	/**
+	 * Creates the tetrahedron with the counterclockwise base a-b-c (seen from outside) and apex d
+	 */
+	private void addTetrahedron(int a, int b, int c, int d) {
+		final int f0 = addFace(a, b, c), f1 = addFace(a, d, b), f2 = addFace(b, d, c), f3 = addFace(c, d, a);
+		final int[] faces = { f0, f1, f2, f3 };
+
+		// twins: edges with swapped tail and head
+		for (int f: faces) {
+			for (int i = 0, e = m_fEdge[f]; i < 3; i++, e = m_eNext[e]) {
+				for (int g: faces) {
+					for (int j = 0, t = m_fEdge[g]; j < 3; j++, t = m_eNext[t]) {
+						if (m_eHead[t] == tail(e) && tail(t) == m_eHead[e]) m_eTwin[e] = t;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Assigns each point to the face of the start tetrahedron with the largest distance above it
+	 */
+	private void partition() {
+		final int[] face = new int[m_n];
+		final int chunks = (m_n + PARALLEL_CHUNK_SIZE - 1)/PARALLEL_CHUNK_SIZE;
+
+		if (chunks > 1) {
+			IntStream.range(0, chunks).parallel().forEach((c) -> findFaces(c*PARALLEL_CHUNK_SIZE, Math.min(m_n, (c + 1)*PARALLEL_CHUNK_SIZE), face));
+		} else {
+			findFaces(0, m_n, face);
+		}
+
+		Arrays.fill(m_fOutside, 0, m_faces, -1);
+		for (int p = m_n - 1; p >= 0; p--) {
+			final int f = face[p];
+			if (f >= 0) addOutside(f, p, distance(f, p));
+		}
+	}
+
+	private void findFaces(int from, int to, int[] face) {
+		for (int p = from; p < to; p++) {
+			int best = -1;
+			double bestDist = m_tolerance;
+
+			for (int f = 0; f < m_faces; f++) {
+				final double d = distance(f, p);
+				if (d > bestDist) {
+					bestDist = d;
+					best = f;
+				}
+			}
+			face[p] = best;
+		}
+	}
+
+	/**
+	 * Adds the eye point to the hull
+	 *
+	 * @param eye furthest outside point of face f
+	 * @param f face visible from the eye point
+	 */
+	private void addPoint(int eye, int f) {
+		computeHorizon(eye, f);
+
+		// collect the outside points of the visible faces
+		int unclaimed = -1;
+		for (int i = 0; i < m_numVisible; i++) {
+			final int v = m_visible[i];
+			for (int p = m_fOutside[v]; p >= 0; ) {
+				final int next = m_pNext[p];
+				if (p != eye) {
+					m_pNext[p] = unclaimed;
+					unclaimed = p;
+				}
+				p = next;
+			}
+			m_fOutside[v] = -1;
+		}
+
+		// new faces: horizon edge tail-head and the eye point
+		final int first = m_faces;
+		for (int i = 0; i < m_numHorizon; i++) {
+			final int h = m_horizon[i];
+			final int g = addFace(tail(h), m_eHead[h], eye);
+			final int e = m_fEdge[g];
+
+			m_eTwin[e] = m_eTwin[h];
+			m_eTwin[m_eTwin[h]] = e;
+			if (i > 0) link(g - 1, g);
+		}
+		link(m_faces - 1, first);
+
+		// redistribute the unclaimed points to the new faces
+		for (int p = unclaimed; p >= 0; ) {
+			final int next = m_pNext[p];
+			int best = -1;
+			double bestDist = m_tolerance;
+
+			for (int g = first; g < m_faces; g++) {
+				final double d = distance(g, p);
+				if (d > bestDist) {
+					bestDist = d;
+					best = g;
+				}
+			}
+			if (best >= 0) addOutside(best, p, bestDist);
+			p = next;
+		}
+		for (int g = first; g < m_faces; g++) {
+			if (m_fOutside[g] >= 0) pushPending(g);
+		}
+	}
+
+	/**
+	 * Twins the edge head-eye of face a with the edge eye-tail of the following face b
+	 */
+	private void link(int a, int b) {
+		final int ea = m_eNext[m_fEdge[a]], eb = m_eNext[m_eNext[m_fEdge[b]]];
+
+		m_eTwin[ea] = eb;
+		m_eTwin[eb] = ea;
+	}
+
+	/**
+	 * Depth-first search of the faces visible from the eye point starting at face f. Marks the visible faces as deleted and
+	 * collects them in m_visible; collects the horizon edges in counterclockwise order in m_horizon.
+	 */
+	private void computeHorizon(int eye, int f) {
+		int sp = 0;
+
+		m_numVisible = 0;
+		m_numHorizon = 0;
+		m_fDeleted[f] = true;
+		m_visible = add(m_visible, m_numVisible++, f);
+		m_stackEdge = add(m_stackEdge, sp, m_fEdge[f]);
+		m_stackCount = add(m_stackCount, sp++, 3);
+
+		while (sp > 0) {
+			if (m_stackCount[sp - 1] == 0) {
+				sp--;
+				continue;
+			}
+			final int e = m_stackEdge[sp - 1];
+			m_stackEdge[sp - 1] = m_eNext[e];
+			m_stackCount[sp - 1]--;
+
+			final int t = m_eTwin[e], g = m_eFace[t];
+			if (!m_fDeleted[g]) {
+				if (distance(g, eye) > m_tolerance) {
+					// visit the other two edges of the neighbour, starting after the twin
+					m_fDeleted[g] = true;
+					m_visible = add(m_visible, m_numVisible++, g);
+					m_stackEdge = add(m_stackEdge, sp, m_eNext[t]);
+					m_stackCount = add(m_stackCount, sp++, 2);
+				} else {
+					m_horizon = add(m_horizon, m_numHorizon++, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a face with the edges a-b, b-c, c-a
+	 *
+	 * @return face index
+	 */
+	private int addFace(int a, int b, int c) {
+		if (m_faces == m_fEdge.length) growFaces();
+		if (m_edges + 3 > m_eHead.length) growEdges();
+
+		final int f = m_faces++, e = m_edges;
+		m_edges += 3;
+
+		m_eHead[e] = b;
+		m_eHead[e + 1] = c;
+		m_eHead[e + 2] = a;
+		for (int i = 0; i < 3; i++) {
+			m_eNext[e + i] = e + (i + 1)%3;
+			m_eFace[e + i] = f;
+			m_eTwin[e + i] = -1;
+		}
+
+		computeNormal(a, b, c, m_normal);
+		m_fEdge[f] = e;
+		m_fnx[f] = m_normal[0];
+		m_fny[f] = m_normal[1];
+		m_fnz[f] = m_normal[2];
+		m_fd[f] = m_normal[0]*x(a) + m_normal[1]*y(a) + m_normal[2]*z(a);
+		m_fOutside[f] = -1;
+		m_fFar[f] = -1;
+		m_fFarDist[f] = 0;
+		m_fDeleted[f] = false;
+		return f;
+	}
+
+	private void addOutside(int f, int p, double dist) {
+		m_pNext[p] = m_fOutside[f];
+		m_fOutside[f] = p;
+		if (dist > m_fFarDist[f] || m_fFar[f] < 0) {
+			m_fFar[f] = p;
+			m_fFarDist[f] = dist;
+		}
+	}
+
+	private void pushPending(int f) {
+		m_pending = add(m_pending, m_numPending++, f);
+	}
+
+	/**
+	 * Unit normal of the triangle a-b-c
+	 */
+	private void computeNormal(int a, int b, int c, double[] normal) {
+		VectorHelper.crossProduct(
+				x(b) - x(a), y(b) - y(a), z(b) - z(a),
+				x(c) - x(a), y(c) - y(a), z(c) - z(a), normal);
+
+		final double len = Math.sqrt(normal[0]*normal[0] + normal[1]*normal[1] + normal[2]*normal[2]);
+		if (len > 0) {
+			normal[0] /= len;
+			normal[1] /= len;
+			normal[2] /= len;
+		}
+	}
+
+	/**
+	 * @return signed distance of point p above face f
+	 */
+	private double distance(int f, int p) {
+		return m_fnx[f]*m_xyz[3*p] + m_fny[f]*m_xyz[3*p + 1] + m_fnz[f]*m_xyz[3*p + 2] - m_fd[f];
+	}
+
+	private int tail(int e) {
+		return m_eHead[m_eNext[m_eNext[e]]];
+	}
+
+	private double x(int p) {
+		return m_xyz[3*p];
+	}
+
+	private double y(int p) {
+		return m_xyz[3*p + 1];
+	}
+
+	private double z(int p) {
+		return m_xyz[3*p + 2];
+	}
+
+	private void growFaces() {
+		final int capacity = 2*m_fEdge.length;
+
+		m_fEdge = Arrays.copyOf(m_fEdge, capacity);
+		m_fOutside = Arrays.copyOf(m_fOutside, capacity);
+		m_fFar = Arrays.copyOf(m_fFar, capacity);
+		m_fnx = Arrays.copyOf(m_fnx, capacity);
+		m_fny = Arrays.copyOf(m_fny, capacity);
+		m_fnz = Arrays.copyOf(m_fnz, capacity);
+		m_fd = Arrays.copyOf(m_fd, capacity);
+		m_fFarDist = Arrays.copyOf(m_fFarDist, capacity);
+		m_fDeleted = Arrays.copyOf(m_fDeleted, capacity);
+	}
+
+	private void growEdges() {
+		final int capacity = 2*m_eHead.length;
+
+		m_eHead = Arrays.copyOf(m_eHead, capacity);
+		m_eNext = Arrays.copyOf(m_eNext, capacity);
+		m_eTwin = Arrays.copyOf(m_eTwin, capacity);
+		m_eFace = Arrays.copyOf(m_eFace, capacity);
+	}
+
+	/**
+	 * Stores value at index i, grows the array if necessary
+	 */
+	private static int[] add(int[] a, int i, int value) {
+		if (i == a.length) a = Arrays.copyOf(a, 2*a.length);
+		a[i] = value;
+		return a;
+	}
+}
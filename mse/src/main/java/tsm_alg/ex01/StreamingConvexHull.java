@@ -0,0 +1,303 @@
+package tsm_alg.ex01;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateFilter;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import tsm_alg.helpers.Predicates;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Computes the convex hull of a stream of points in one pass with bounded memory.
+ * <p>
+ * Points are collected in a chunk buffer of primitive coordinates. Points strictly inside the running hull
+ * are discarded immediately (O(log h) test). A full chunk is merged with the running hull:
+ * the hull vertices and the chunk points are sorted and the new hull is computed by Andrew's monotone chain algorithm.
+ * Duplicated and collinear points are removed by the strict orientation test, hence no global de-duplication is needed.
+ * The memory consumption is O(chunk size + h), where h is the number of hull vertices.
+ */
+public class StreamingConvexHull {
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	private final GeometryFactory m_factory;
+	private final int m_chunkSize;
+	private double[] m_x, m_y;			// chunk buffer: points of the current chunk followed by the hull vertices while merging
+	private int m_n;					// number of points in the chunk buffer
+	private double[] m_hx, m_hy;		// running hull: vertices in counterclockwise order, starting at the lowest-leftmost vertex
+	private int m_h;					// number of hull vertices
+	private long m_points, m_discarded;	// number of all points and of points discarded by the inside test
+
+	/**
+	 * Creates new streaming convex hull construction with default chunk size
+	 * @param factory geometry factory of the resulting hull
+	 */
+	public StreamingConvexHull(GeometryFactory factory) {
+		this(factory, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates new streaming convex hull construction
+	 * @param factory geometry factory of the resulting hull
+	 * @param chunkSize number of points merged at once with the running hull
+	 */
+	public StreamingConvexHull(GeometryFactory factory, int chunkSize) {
+		if (chunkSize < 3) throw new IllegalArgumentException("chunk size too small: " + chunkSize);
+		m_factory = factory;
+		m_chunkSize = chunkSize;
+		m_x = new double[chunkSize];
+		m_y = new double[chunkSize];
+		m_hx = new double[16];
+		m_hy = new double[16];
+	}
+
+	/**
+	 * Adds one point
+	 * @param x
+	 * @param y
+	 */
+	public void add(double x, double y) {
+		m_points++;
+		if (isInside(x, y)) {
+			m_discarded++;
+			return;
+		}
+		m_x[m_n] = x;
+		m_y[m_n] = y;
+		if (++m_n == m_chunkSize) merge();
+	}
+
+	public void add(Coordinate c) {
+		add(c.x, c.y);
+	}
+
+	/**
+	 * Adds all points of an iterator
+	 * @param it iterator
+	 */
+	public void addAll(Iterator<Coordinate> it) {
+		while (it.hasNext()) {
+			add(it.next());
+		}
+	}
+
+	/**
+	 * Adds all coordinates of a geometry without copying them
+	 * @param geometry geometry
+	 */
+	public void add(Geometry geometry) {
+		geometry.apply((CoordinateFilter)this::add);
+	}
+
+	/**
+	 * Reads points in csv format: x-coord;y-coord[;further columns], line by line
+	 * @param file csv file
+	 * @throws IOException
+	 */
+	public void readCSV(Path file) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+			String s;
+			while ((s = reader.readLine()) != null) {
+				final int i = s.indexOf(';');
+				if (i < 0) continue;
+
+				int j = s.indexOf(';', i + 1);
+				if (j < 0) j = s.length();
+				add(Double.parseDouble(s.substring(0, i)), Double.parseDouble(s.substring(i + 1, j)));
+			}
+		}
+	}
+
+	/**
+	 * @return number of added points
+	 */
+	public long numPoints() {
+		return m_points;
+	}
+
+	/**
+	 * @return number of added points discarded because they were inside of the running hull
+	 */
+	public long numDiscarded() {
+		return m_discarded;
+	}
+
+	/**
+	 * Returns the convex hull of all points added so far. Further points can be added afterwards.
+	 *
+	 * @return if the convex hull contains 3 or more points, a {@link com.vividsolutions.jts.geom.Polygon};
+	 *         2 points, a {@link com.vividsolutions.jts.geom.LineString}; 1 point, a {@link com.vividsolutions.jts.geom.Point}; 0
+	 *         points, an empty {@link com.vividsolutions.jts.geom.GeometryCollection}.
+	 */
+	public Geometry getConvexHull() {
+		if (m_n > 0) merge();
+
+		if (m_h == 0) {
+			return m_factory.createGeometryCollection(null);
+		}
+		if (m_h == 1) {
+			return m_factory.createPoint(new Coordinate(m_hx[0], m_hy[0]));
+		}
+		if (m_h == 2) {
+			return m_factory.createLineString(new Coordinate[] { new Coordinate(m_hx[0], m_hy[0]), new Coordinate(m_hx[1], m_hy[1]) });
+		}
+
+		Coordinate[] ring = new Coordinate[m_h + 1];
+		for (int i = 0; i < m_h; i++) {
+			ring[i] = new Coordinate(m_hx[i], m_hy[i]);
+		}
+		ring[m_h] = new Coordinate(ring[0]);
+		return m_factory.createPolygon(m_factory.createLinearRing(ring), null);
+	}
+
+	/**
+	 * Tests if a point lies strictly inside of the running hull in O(log h) time
+	 */
+	private boolean isInside(double x, double y) {
+		if (m_h < 3) return false;
+
+		final double x0 = m_hx[0], y0 = m_hy[0];
+		if (Predicates.orientationIndex(x0, y0, m_hx[1], m_hy[1], x, y) <= 0) return false;
+		if (Predicates.orientationIndex(x0, y0, m_hx[m_h - 1], m_hy[m_h - 1], x, y) >= 0) return false;
+
+		// wedge (v0, v[lo], v[lo + 1]) containing the point
+		int lo = 1, hi = m_h - 1;
+		while (hi - lo > 1) {
+			final int mid = (lo + hi) >>> 1;
+			if (Predicates.orientationIndex(x0, y0, m_hx[mid], m_hy[mid], x, y) > 0) lo = mid;
+			else hi = mid;
+		}
+		return Predicates.orientationIndex(m_hx[lo], m_hy[lo], m_hx[lo + 1], m_hy[lo + 1], x, y) > 0;
+	}
+
+	/**
+	 * Merges the chunk buffer with the running hull in O((n + h) log(n + h)) time
+	 */
+	private void merge() {
+		final int n = m_n + m_h;
+
+		if (m_x.length < n) {
+			m_x = Arrays.copyOf(m_x, n);
+			m_y = Arrays.copyOf(m_y, n);
+		}
+		System.arraycopy(m_hx, 0, m_x, m_n, m_h);
+		System.arraycopy(m_hy, 0, m_y, m_n, m_h);
+		sort(m_x, m_y, 0, n - 1);
+
+		if (m_hx.length < n + 1) {
+			m_hx = new double[n + 1];
+			m_hy = new double[n + 1];
+		}
+
+		m_h = monotoneChain(m_x, m_y, n, m_hx, m_hy);
+		m_n = 0;
+	}
+
+	/**
+	 * Andrew's monotone chain: lower hull from left to right, then upper hull from right to left
+	 *
+	 * @param x x-coordinates of the points sorted lexicographically by x and y
+	 * @param y y-coordinates of the points
+	 * @param n number of points, n > 0
+	 * @param hx receives the x-coordinates of the hull vertices in counterclockwise order, length at least n + 1
+	 * @param hy receives the y-coordinates of the hull vertices
+	 * @return number of hull vertices
+	 */
+	static int monotoneChain(double[] x, double[] y, int n, double[] hx, double[] hy) {
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			while (k >= 2 && Predicates.orientationIndex(hx[k - 2], hy[k - 2], hx[k - 1], hy[k - 1], x[i], y[i]) <= 0) k--;
+			hx[k] = x[i]; hy[k] = y[i]; k++;
+		}
+		for (int i = n - 2, t = k + 1; i >= 0; i--) {
+			while (k >= t && Predicates.orientationIndex(hx[k - 2], hy[k - 2], hx[k - 1], hy[k - 1], x[i], y[i]) <= 0) k--;
+			hx[k] = x[i]; hy[k] = y[i]; k++;
+		}
+
+		// the last vertex equals the first one
+		int h = (n == 1) ? 1 : k - 1;
+		if (h == 2 && hx[0] == hx[1] && hy[0] == hy[1]) h = 1;
+		return h;
+	}
+
+	/**
+	 * Sorts points lexicographically by x and y (quicksort with median of three)
+	 */
+	static void sort(double[] x, double[] y, int lo, int hi) {
+		while (hi - lo > 16) {
+			final int mid = (lo + hi) >>> 1;
+
+			// median of three as pivot in mid
+			if (less(x, y, mid, lo)) swap(x, y, mid, lo);
+			if (less(x, y, hi, lo)) swap(x, y, hi, lo);
+			if (less(x, y, hi, mid)) swap(x, y, hi, mid);
+			final double px = x[mid], py = y[mid];
+
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (x[i] < px || (x[i] == px && y[i] < py)) i++;
+				while (x[j] > px || (x[j] == px && y[j] > py)) j--;
+				if (i <= j) swap(x, y, i++, j--);
+			}
+			// recursion into the smaller part
+			if (j - lo < hi - i) {
+				sort(x, y, lo, j);
+				lo = i;
+			} else {
+				sort(x, y, i, hi);
+				hi = j;
+			}
+		}
+		// insertion sort
+		for (int i = lo + 1; i <= hi; i++) {
+			final double vx = x[i], vy = y[i];
+			int j = i - 1;
+			while (j >= lo && (x[j] > vx || (x[j] == vx && y[j] > vy))) {
+				x[j + 1] = x[j]; y[j + 1] = y[j];
+				j--;
+			}
+			x[j + 1] = vx; y[j + 1] = vy;
+		}
+	}
+
+	private static boolean less(double[] x, double[] y, int i, int j) {
+		return x[i] < x[j] || (x[i] == x[j] && y[i] < y[j]);
+	}
+
+	private static void swap(double[] x, double[] y, int i, int j) {
+		final double tx = x[i], ty = y[i];
+		x[i] = x[j]; y[i] = y[j];
+		x[j] = tx; y[j] = ty;
+	}
+
+	/**
+	 * Computes the convex hull of a csv point file
+	 *
+	 * @param args file [chunk size]
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: java StreamingConvexHull file [chunkSize]");
+			return;
+		}
+		final int chunkSize = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_CHUNK_SIZE;
+		StreamingConvexHull hull = new StreamingConvexHull(new GeometryFactory(), chunkSize);
+
+		long tStart = System.currentTimeMillis();
+		hull.readCSV(Paths.get(args[0]));
+		Geometry g = hull.getConvexHull();
+		long tEnd = System.currentTimeMillis();
+
+		System.out.println(g);
+		System.out.println("" + hull.numPoints() + " points (discarded inside of running hull: " + hull.numDiscarded() + ")");
+		System.out.println("" + (tEnd - tStart) + " ms");
+	}
+}
@@ -0,0 +1,349 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Terrain given as regular grid (digital elevation model): a height raster in row-major order
+ * with an origin (lower left grid point) and a cell size.
+ * <p>
+ * Each grid cell consists of two triangles, hence no triangulation is needed. The upper boundaries
+ * of the front facing triangles are generated in a row-major scan over the raster. Each grid point
+ * is projected only once.
+ */
+public class GridTerrain {
+	private float[] m_heights;		// row-major height raster: index = j*m_nx + i
+	private int m_nx, m_ny;			// number of grid points in x and y direction
+	private double m_x0, m_y0;		// origin = lower left grid point
+	private double m_cellSize;		// distance between neighboring grid points
+
+	/**
+	 * Creates new grid terrain
+	 *
+	 * @param heights row-major height raster of size nx*ny
+	 * @param nx number of grid points in x direction
+	 * @param ny number of grid points in y direction
+	 * @param x0 x-coordinate of lower left grid point
+	 * @param y0 y-coordinate of lower left grid point
+	 * @param cellSize distance between neighboring grid points
+	 */
+	public GridTerrain(float[] heights, int nx, int ny, double x0, double y0, double cellSize) {
+		if (heights.length != nx*ny) throw new IllegalArgumentException("wrong raster size: " + heights.length);
+		m_heights = heights;
+		m_nx = nx;
+		m_ny = ny;
+		m_x0 = x0;
+		m_y0 = y0;
+		m_cellSize = cellSize;
+	}
+
+	/**
+	 * Detects a regular grid with square cells in a list of terrain points
+	 *
+	 * @param pts terrain points
+	 * @return grid terrain or null if the points do not form a complete regular grid
+	 */
+	public static GridTerrain create(List<Coordinate> pts) {
+		final int n = pts.size();
+		double[] x = new double[n], y = new double[n], z = new double[n];
+
+		for (int i = 0; i < n; i++) {
+			Coordinate c = pts.get(i);
+			x[i] = c.x; y[i] = c.y; z[i] = c.z;
+		}
+		return create(x, y, z, n);
+	}
+
+	/**
+	 * Detects a regular grid with square cells in n terrain points given as primitive arrays
+	 *
+	 * @param x x-coordinates
+	 * @param y y-coordinates
+	 * @param z heights
+	 * @param n number of points
+	 * @return grid terrain or null if the points do not form a complete regular grid
+	 */
+	public static GridTerrain create(double[] x, double[] y, double[] z, int n) {
+		if (n < 4) return null;
+
+		final double[] xs = distinctSorted(x, n);
+		final double[] ys = distinctSorted(y, n);
+		if (xs.length < 2 || ys.length < 2 || (long)xs.length*ys.length != n) return null;
+
+		final double cellSize = xs[1] - xs[0];
+		final double eps = 1e-9*cellSize;
+		if (!isRegular(xs, cellSize, eps) || !isRegular(ys, cellSize, eps)) return null;
+
+		final int nx = xs.length, ny = ys.length;
+		final float[] heights = new float[n];
+		final boolean[] filled = new boolean[n];
+
+		for (int k = 0; k < n; k++) {
+			final int i = (int)Math.round((x[k] - xs[0])/cellSize);
+			final int j = (int)Math.round((y[k] - ys[0])/cellSize);
+			final int index = j*nx + i;
+
+			if (filled[index]) return null;	// duplicated point
+			filled[index] = true;
+			heights[index] = (float)z[k];
+		}
+		return new GridTerrain(heights, nx, ny, xs[0], ys[0], cellSize);
+	}
+
+	public int getNx() {
+		return m_nx;
+	}
+
+	public int getNy() {
+		return m_ny;
+	}
+
+	public double getCellSize() {
+		return m_cellSize;
+	}
+
+	public double getX(int i) {
+		return m_x0 + i*m_cellSize;
+	}
+
+	public double getY(int j) {
+		return m_y0 + j*m_cellSize;
+	}
+
+	public float getHeight(int i, int j) {
+		return m_heights[j*m_nx + i];
+	}
+
+	/**
+	 * Computes the upper boundaries of all front facing triangles within a visible radius.
+	 * Each cell (i, j) consists of the two counter-clockwise oriented triangles
+	 * (i,j)-(i+1,j)-(i+1,j+1) and (i,j)-(i+1,j+1)-(i,j+1).
+	 *
+	 * @param viewPoint viewpoint = center of cylinder
+	 * @param radius visible radius in terrain units
+	 * @return upper boundaries of projected front facing triangles
+	 */
+	public ArrayList<MonotoneChain> computeChains(Coordinate viewPoint, double radius) {
+		return computeChains(viewPoint, radius, false);
+	}
+
+	/**
+	 * Computes the upper boundaries of all front facing triangles intersecting the visible disc
+	 *
+	 * @param viewPoint viewpoint = center of cylinder
+	 * @param radius visible radius in terrain units
+	 * @param wrapAround true: full 360 degree panorama including the triangles crossing the seam
+	 * @return upper boundaries of projected front facing triangles
+	 */
+	public ArrayList<MonotoneChain> computeChains(Coordinate viewPoint, double radius, boolean wrapAround) {
+		// grid points within bounding box of visible disc
+		final int i0 = Math.max(0, (int)Math.floor((viewPoint.x - radius - m_x0)/m_cellSize));
+		final int i1 = Math.min(m_nx - 1, (int)Math.ceil((viewPoint.x + radius - m_x0)/m_cellSize));
+		final int j0 = Math.max(0, (int)Math.floor((viewPoint.y - radius - m_y0)/m_cellSize));
+		final int j1 = Math.min(m_ny - 1, (int)Math.ceil((viewPoint.y + radius - m_y0)/m_cellSize));
+		if (i0 >= i1 || j0 >= j1) return new ArrayList<>();
+
+		// each of the two triangles of a cell has at most one upper boundary (except for a few triangles at the seam in wraparound mode)
+		final ArrayList<MonotoneChain> chains = new ArrayList<>(2*(i1 - i0)*(j1 - j0));
+		final double r2 = radius*radius;
+
+		// projected grid points of two consecutive rows
+		final RowBuffer buffer = new RowBuffer(i0, i1);
+		Coordinate[] lower = new Coordinate[i1 - i0 + 1];
+		Coordinate[] upper = new Coordinate[i1 - i0 + 1];
+
+		projectRow(viewPoint, j0, buffer, lower, wrapAround);
+		for (int j = j0; j < j1; j++) {
+			projectRow(viewPoint, j + 1, buffer, upper, wrapAround);
+
+			final double y = getY(j);
+			for (int i = i0; i < i1; i++) {
+				if (!intersectsDisc(i, j, viewPoint.x, viewPoint.y, r2)) continue;
+
+				final int k = i - i0;
+				final double x = getX(i);
+				final double za = m_heights[j*m_nx + i];
+				final double zb = m_heights[j*m_nx + i + 1];
+				final double zc = m_heights[(j + 1)*m_nx + i];
+				final double zd = m_heights[(j + 1)*m_nx + i + 1];
+
+				// view vector to lower left grid point (i,j)
+				final double vx = x - viewPoint.x, vy = y - viewPoint.y, vz = za - viewPoint.z;
+
+				// triangle a-b-d: normal = (b - a) x (d - a) = (za - zb, zb - zd, cellSize)*cellSize
+				if (ProjectionKernel.isFrontFacing(vx, vy, vz, za - zb, zb - zd, m_cellSize)) {
+					addUpperBoundary(chains, lower[k], lower[k + 1], upper[k + 1], wrapAround);
+				}
+				// triangle a-d-c: normal = (d - a) x (c - a) = (zc - zd, za - zc, cellSize)*cellSize
+				if (ProjectionKernel.isFrontFacing(vx, vy, vz, zc - zd, za - zc, m_cellSize)) {
+					addUpperBoundary(chains, lower[k], upper[k + 1], upper[k], wrapAround);
+				}
+			}
+			Coordinate[] t = lower; lower = upper; upper = t;
+		}
+		return chains;
+	}
+
+	/**
+	 * Computes the upper boundaries of all front facing triangles within a visible radius for several eye heights
+	 * at the same location. Each grid point is projected once: azimuth and distance are shared by all eye heights,
+	 * only the projected y-coordinates and the front facing tests are computed per eye height.
+	 *
+	 * @param x x-coordinate of the viewpoints
+	 * @param y y-coordinate of the viewpoints
+	 * @param eyeZ eye heights (z-coordinates of the viewpoints)
+	 * @param radius visible radius in terrain units
+	 * @param wrapAround true: full 360 degree panorama including the triangles crossing the seam
+	 * @return upper boundaries of projected front facing triangles: one list per eye height
+	 */
+	public List<ArrayList<MonotoneChain>> computeChains(double x, double y, double[] eyeZ, double radius, boolean wrapAround) {
+		final int i0 = Math.max(0, (int)Math.floor((x - radius - m_x0)/m_cellSize));
+		final int i1 = Math.min(m_nx - 1, (int)Math.ceil((x + radius - m_x0)/m_cellSize));
+		final int j0 = Math.max(0, (int)Math.floor((y - radius - m_y0)/m_cellSize));
+		final int j1 = Math.min(m_ny - 1, (int)Math.ceil((y + radius - m_y0)/m_cellSize));
+		final int nh = eyeZ.length;
+		final ArrayList<ArrayList<MonotoneChain>> chains = new ArrayList<>(nh);
+
+		if (i0 >= i1 || j0 >= j1) {
+			for (int h = 0; h < nh; h++) chains.add(new ArrayList<>());
+			return chains;
+		}
+		for (int h = 0; h < nh; h++) chains.add(new ArrayList<>((i1 - i0)*(j1 - j0)));
+		final double r2 = radius*radius;
+
+		// projected grid points of two consecutive rows for each eye height
+		final RowBuffer buffer = new RowBuffer(i0, i1);
+		Coordinate[][] lower = new Coordinate[nh][i1 - i0 + 1];
+		Coordinate[][] upper = new Coordinate[nh][i1 - i0 + 1];
+
+		projectRow(x, y, eyeZ, j0, buffer, lower, wrapAround);
+		for (int j = j0; j < j1; j++) {
+			projectRow(x, y, eyeZ, j + 1, buffer, upper, wrapAround);
+
+			final double gy = getY(j);
+			for (int i = i0; i < i1; i++) {
+				if (!intersectsDisc(i, j, x, y, r2)) continue;
+
+				final int k = i - i0;
+				final double vx = getX(i) - x, vy = gy - y;
+				final double za = m_heights[j*m_nx + i];
+				final double zb = m_heights[j*m_nx + i + 1];
+				final double zc = m_heights[(j + 1)*m_nx + i];
+				final double zd = m_heights[(j + 1)*m_nx + i + 1];
+
+				for (int h = 0; h < nh; h++) {
+					final double vz = za - eyeZ[h];
+					final Coordinate[] lo = lower[h], up = upper[h];
+
+					if (ProjectionKernel.isFrontFacing(vx, vy, vz, za - zb, zb - zd, m_cellSize)) {
+						addUpperBoundary(chains.get(h), lo[k], lo[k + 1], up[k + 1], wrapAround);
+					}
+					if (ProjectionKernel.isFrontFacing(vx, vy, vz, zc - zd, za - zc, m_cellSize)) {
+						addUpperBoundary(chains.get(h), lo[k], up[k + 1], up[k], wrapAround);
+					}
+				}
+			}
+			Coordinate[][] t = lower; lower = upper; upper = t;
+		}
+		return chains;
+	}
+
+	/**
+	 * Tests if cell (i, j) intersects the disc of squared radius r2 around (x, y). The bounding box of both triangles
+	 * of a cell is the cell, hence this is the same test as TriangleIndex.queryRadius.
+	 */
+	private boolean intersectsDisc(int i, int j, double x, double y, double r2) {
+		final double dx = Math.max(0, Math.max(getX(i) - x, x - getX(i + 1)));
+		final double dy = Math.max(0, Math.max(getY(j) - y, y - getY(j + 1)));
+
+		return dx*dx + dy*dy <= r2;
+	}
+
+	private static void addUpperBoundary(List<MonotoneChain> chains, Coordinate p0, Coordinate p1, Coordinate p2, boolean wrapAround) {
+		if (p0 != null && p1 != null && p2 != null) {
+			if (wrapAround) {
+				Main.addWrappedUpperBoundary(chains, p0, p1, p2);
+			} else {
+				MonotoneChain mc = Main.computeUpperBoundary(p0, p1, p2);
+				if (mc != null) chains.add(mc);
+			}
+		}
+	}
+
+	/**
+	 * Projects the grid points (i0..i1, j) with the projection kernel
+	 */
+	private void projectRow(Coordinate viewPoint, int j, RowBuffer b, Coordinate[] row, boolean wrapAround) {
+		final int n = b.m_x.length;
+		final int offset = j*m_nx + b.m_i0;
+
+		Arrays.fill(b.m_y, getY(j));
+		for (int k = 0; k < n; k++) b.m_z[k] = m_heights[offset + k];
+		ProjectionKernel.project(viewPoint, b.m_x, b.m_y, b.m_z, n, b.m_px, b.m_py, wrapAround);
+		for (int k = 0; k < n; k++) {
+			row[k] = Double.isNaN(b.m_py[k]) ? null : new Coordinate(b.m_px[k], b.m_py[k]);
+		}
+	}
+
+	/**
+	 * Projects the grid points (i0..i1, j) for several eye heights: azimuths and distances are computed once
+	 */
+	private void projectRow(double x, double y, double[] eyeZ, int j, RowBuffer b, Coordinate[][] rows, boolean wrapAround) {
+		final int n = b.m_x.length;
+		final int offset = j*m_nx + b.m_i0;
+
+		Arrays.fill(b.m_y, getY(j));
+		for (int k = 0; k < n; k++) b.m_z[k] = m_heights[offset + k];
+		ProjectionKernel.projectAzimuth(x, y, b.m_x, b.m_y, n, b.m_px, b.m_inv, wrapAround);
+		for (int h = 0; h < eyeZ.length; h++) {
+			final Coordinate[] row = rows[h];
+
+			ProjectionKernel.elevate(b.m_z, b.m_inv, n, eyeZ[h], b.m_py);
+			for (int k = 0; k < n; k++) {
+				row[k] = Double.isNaN(b.m_py[k]) ? null : new Coordinate(b.m_px[k], b.m_py[k]);
+			}
+		}
+	}
+
+	/**
+	 * Structure-of-arrays buffers of the grid points (i0..i1) of one row
+	 */
+	private class RowBuffer {
+		private final int m_i0;
+		private final double[] m_x, m_y, m_z, m_px, m_py, m_inv;
+
+		private RowBuffer(int i0, int i1) {
+			final int n = i1 - i0 + 1;
+
+			m_i0 = i0;
+			m_x = new double[n];
+			m_y = new double[n];
+			m_z = new double[n];
+			m_px = new double[n];
+			m_py = new double[n];
+			m_inv = new double[n];
+			for (int k = 0; k < n; k++) m_x[k] = getX(i0 + k);
+		}
+	}
+
+	private static double[] distinctSorted(double[] a, int n) {
+		double[] s = Arrays.copyOf(a, n);
+		int cnt = 0;
+
+		Arrays.sort(s);
+		for (int i = 0; i < n; i++) {
+			if (cnt == 0 || s[i] != s[cnt - 1]) s[cnt++] = s[i];
+		}
+		return Arrays.copyOf(s, cnt);
+	}
+
+	private static boolean isRegular(double[] values, double step, double eps) {
+		for (int i = 1; i < values.length; i++) {
+			if (Math.abs(values[i] - values[0] - i*step) > eps*i) return false;
+		}
+		return true;
+	}
+}
@@ -5,17 +5,40 @@ import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.MultiLineString;
 
-import java.util.LinkedList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
- * x-monotone linked list of strictly x-monotone chains
+ * x-monotone list of strictly x-monotone chains
  * @author Christoph Stamm
  *
  */
 public class Horizon {
-	private LinkedList<MonotoneChain> m_chains = new LinkedList<>();	// x-monotone linked list of chains
+	private static final int MIN_SLAB_SIZE = 4096;		// minimal number of vertices per slab of a parallel merge
 	
-	private Horizon() {	}
+	private ArrayList<MonotoneChain> m_chains;		// x-monotone list of chains
+	
+	/**
+	 * Creates new empty horizon
+	 */
+	public Horizon() {
+		m_chains = new ArrayList<>();
+	}
+	
+	/**
+	 * Creates new empty horizon for an expected number of chains
+	 * 
+	 * @param capacity expected number of chains
+	 */
+	public Horizon(int capacity) {
+		m_chains = new ArrayList<>(capacity);
+	}
 	
 	/**
 	 * Creates new horizon of one monotone chain
@@ -23,6 +46,7 @@ public class Horizon {
 	 * @param mc monotone chain
 	 */
 	public Horizon(MonotoneChain mc) {
+		m_chains = new ArrayList<>(1);
 		m_chains.add(mc);
 	}
 	
@@ -36,46 +60,352 @@ public class Horizon {
 	
 	/**
 	 * Merges two horizons (this and h) in O(n + k) time and returns the merged horizon.
-	 * Uses a plane sweep approach.
+	 * Chains in x-ranges covered by only one horizon are spliced into the result; they are found by galloping search.
+	 * Only x-ranges covered by both horizons are merged with a plane sweep approach, hence the
+	 * costs depend on the size of the overlapping parts.
 	 * 
 	 * @param h second horizon
 	 * @return merged horizon
 	 */
 	public Horizon merge(Horizon h) {
-		Horizon horizon = new Horizon();
-		SweepLine<Status> sl = new SweepLine<>(new Status(horizon));
-
-		// TODO: fill in sweep line with initial events done
-		// TODO: run sweep line process done
-
-		// Just iterate over all chains of this horizon and add all coordinates to the sweep line.
-		for(MonotoneChain mc : m_chains){
-
-			sl.addEvent(new StartEvent(sl, mc.getMinX(), mc));
-			for(int i=1; i<mc.getCoords().length-1; i++){
-				sl.addEvent(new InnerEvent(sl, mc.getCoords()[i].x, mc, i));
+		final ArrayList<MonotoneChain> a = m_chains, b = h.m_chains;
+		Horizon horizon = new Horizon(a.size() + b.size());
+		int i = 0, j = 0;
+		
+		while (i < a.size() && j < b.size()) {
+			if (a.get(i).getMaxX() <= b.get(j).getMinX()) {
+				// only this horizon
+				final int k = gallop(a, i, b.get(j).getMinX());
+				horizon.m_chains.addAll(a.subList(i, k));
+				i = k;
+			} else if (b.get(j).getMaxX() <= a.get(i).getMinX()) {
+				// only h
+				final int k = gallop(b, j, a.get(i).getMinX());
+				horizon.m_chains.addAll(b.subList(j, k));
+				j = k;
+			} else {
+				// overlapping x-range: extend it by all chains of both horizons starting within it
+				double maxX = Math.max(a.get(i).getMaxX(), b.get(j).getMaxX());
+				int i2 = i + 1, j2 = j + 1;
+				boolean extended = true;
+				
+				while (extended) {
+					extended = false;
+					while (i2 < a.size() && a.get(i2).getMinX() < maxX) {
+						maxX = Math.max(maxX, a.get(i2++).getMaxX());
+						extended = true;
+					}
+					while (j2 < b.size() && b.get(j2).getMinX() < maxX) {
+						maxX = Math.max(maxX, b.get(j2++).getMaxX());
+						extended = true;
+					}
+				}
+				sweep(a.subList(i, i2), b.subList(j, j2), horizon);
+				i = i2;
+				j = j2;
 			}
-			sl.addEvent(new StopEvent(sl, mc.getMaxX(), mc, mc.size()-1));
 		}
+		horizon.m_chains.addAll(a.subList(i, a.size()));
+		horizon.m_chains.addAll(b.subList(j, b.size()));
+		
+		assert horizon.isValid() : "invalid horizon";
+		
+		return horizon;
+	}
+	
+	/**
+	 * Merges two horizons (this and h) with one plane sweep over all chains, without splicing.
+	 * Reference implementation of merge.
+	 * 
+	 * @param h second horizon
+	 * @return merged horizon
+	 */
+	Horizon mergeSweep(Horizon h) {
+		Horizon horizon = new Horizon(m_chains.size() + h.m_chains.size());
+		
+		sweep(m_chains, h.m_chains, horizon);
+		
+		assert horizon.isValid() : "invalid horizon";
+		
+		return horizon;
+	}
+	
+	/**
+	 * Merges two lists of chains with a plane sweep and appends the merged chains to horizon
+	 * 
+	 * @param a x-monotone list of chains
+	 * @param b x-monotone list of chains
+	 * @param horizon resulting horizon
+	 */
+	private static void sweep(List<MonotoneChain> a, List<MonotoneChain> b, Horizon horizon) {
+		int n = 0;
+		for(MonotoneChain mc : a) n += mc.size();
+		for(MonotoneChain mc : b) n += mc.size();
+		
+		SweepLine<Status> sl = new SweepLine<>(new Status(horizon, n), n);
 
-		// Do the same for the given horizon.
-		for(MonotoneChain mc : h.m_chains){
-
-			sl.addEvent(new StartEvent(sl, mc.getMinX(), mc));
-			for(int i=1; i<mc.getCoords().length-1; i++){
-				sl.addEvent(new InnerEvent(sl, mc.getCoords()[i].x, mc, i));
-			}
-			sl.addEvent(new StopEvent(sl, mc.getMaxX(), mc, mc.size()-1));
+		// Just iterate over all chains of both lists and add all coordinates to the sweep line.
+		for(MonotoneChain mc : a){
+			addEvents(sl, mc);
+		}
+		for(MonotoneChain mc : b){
+			addEvents(sl, mc);
 		}
 
 		// Start the sweep line process.
 		sl.process();
-
+	}
+	
+	private static void addEvents(SweepLine<Status> sl, MonotoneChain mc) {
+		sl.addEvent(new StartEvent(sl, mc.getMinX(), mc));
+		for(int i=1; i<mc.getCoords().length-1; i++){
+			sl.addEvent(new InnerEvent(sl, mc.getCoords()[i].x, mc, i));
+		}
+		sl.addEvent(new StopEvent(sl, mc.getMaxX(), mc, mc.size()-1));
+	}
+	
+	/**
+	 * Galloping search: exponential search followed by binary search
+	 * 
+	 * @param chains x-monotone list of chains
+	 * @param from start index (chains[from] ends at or left of x)
+	 * @param x x-coordinate
+	 * @return index of the first chain after from ending right of x
+	 */
+	private static int gallop(ArrayList<MonotoneChain> chains, int from, double x) {
+		assert chains.get(from).getMaxX() <= x;
+		int lo = from, step = 1, hi = from + 1;
+		
+		while (hi < chains.size() && chains.get(hi).getMaxX() <= x) {
+			lo = hi;
+			step <<= 1;
+			hi = from + step;
+		}
+		hi = Math.min(hi, chains.size());
+		
+		// chains[lo] ends at or left of x, chains[hi] ends right of x (or hi = size)
+		while (hi - lo > 1) {
+			final int mid = (lo + hi) >>> 1;
+			if (chains.get(mid).getMaxX() <= x) lo = mid;
+			else hi = mid;
+		}
+		return hi;
+	}
+	
+	/**
+	 * Merges two horizons (this and h) with several concurrent sweeps and returns the merged horizon.
+	 * The x-axis is split into slabs with about the same number of vertices of both horizons.
+	 * The chains of both horizons are clipped at the slab boundaries and each slab is merged
+	 * by an independent sweep. The slab results are concatenated, and chains split at a slab boundary are joined again.
+	 * 
+	 * @param h second horizon
+	 * @param parallelism maximal number of slabs
+	 * @return merged horizon
+	 */
+	public Horizon merge(Horizon h, int parallelism) {
+		final int n = numVertices() + h.numVertices();
+		final int slabs = Math.min(parallelism, n/MIN_SLAB_SIZE);
+		
+		if (slabs <= 1) return merge(h);
+		
+		final double[] bounds = slabBounds(h, slabs);
+		final MonotoneChain[] chainsA = m_chains.toArray(new MonotoneChain[m_chains.size()]);
+		final MonotoneChain[] chainsB = h.m_chains.toArray(new MonotoneChain[h.m_chains.size()]);
+		final Horizon[] parts = new Horizon[bounds.length - 1];
+		
+		IntStream.range(0, parts.length).parallel().forEach((i) -> {
+			Horizon a = slice(chainsA, bounds[i], bounds[i + 1]);
+			Horizon b = slice(chainsB, bounds[i], bounds[i + 1]);
+			
+			parts[i] = (a.isEmpty()) ? b : (b.isEmpty()) ? a : a.merge(b);
+		});
+		
+		// stitch slab results
+		int nChains = 0;
+		for(Horizon part: parts) nChains += part.size();
+		
+		Horizon horizon = new Horizon(nChains);
+		for(Horizon part: parts) {
+			for(MonotoneChain mc: part.m_chains) {
+				if (!horizon.isEmpty() && horizon.getLast().isLeftSiblingOf(mc)) {
+					mc = horizon.removeLast().join(mc);
+				}
+				horizon.add(mc);
+			}
+		}
+		
 		assert horizon.isValid() : "invalid horizon";
 		
 		return horizon;
 	}
 	
+	/**
+	 * Computes slab boundaries such that each slab contains about the same number of vertices of this and h.
+	 * Walks through the x-sorted vertices of both horizons like merge sort.
+	 * 
+	 * @param h second horizon
+	 * @param slabs number of slabs
+	 * @return strictly increasing boundaries: -infinity, inner boundaries, +infinity
+	 */
+	private double[] slabBounds(Horizon h, int slabs) {
+		final int n = numVertices() + h.numVertices();
+		final Iterator<MonotoneChain> itA = m_chains.iterator(), itB = h.m_chains.iterator();
+		MonotoneChain a = itA.hasNext() ? itA.next() : null, b = itB.hasNext() ? itB.next() : null;
+		int ia = 0, ib = 0, cnt = 0, k = 1;
+		double[] bounds = new double[slabs + 1];
+		
+		bounds[0] = Double.NEGATIVE_INFINITY;
+		while (k < slabs && (a != null || b != null)) {
+			double x;
+			
+			if (b == null || (a != null && a.get(ia).x <= b.get(ib).x)) {
+				x = a.get(ia).x;
+				if (++ia == a.size()) { a = itA.hasNext() ? itA.next() : null; ia = 0; }
+			} else {
+				x = b.get(ib).x;
+				if (++ib == b.size()) { b = itB.hasNext() ? itB.next() : null; ib = 0; }
+			}
+			if (++cnt >= (long)k*n/slabs && x > bounds[k - 1]) {
+				bounds[k++] = x;
+			}
+		}
+		bounds[k] = Double.POSITIVE_INFINITY;
+		return Arrays.copyOf(bounds, k + 1);
+	}
+	
+	/**
+	 * Clips an x-sorted array of chains to the x-range [minX, maxX]
+	 * 
+	 * @param chains x-monotone array of chains
+	 * @param minX left end of the x-range
+	 * @param maxX right end of the x-range
+	 * @return horizon of clipped chains
+	 */
+	private static Horizon slice(MonotoneChain[] chains, double minX, double maxX) {
+		// first chain ending right of minX
+		int lo = 0, hi = chains.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (chains[mid].getMaxX() <= minX) lo = mid + 1;
+			else hi = mid;
+		}
+		// first chain starting at or right of maxX
+		int end = lo;
+		while (end < chains.length && chains[end].getMinX() < maxX) end++;
+		
+		Horizon horizon = new Horizon(end - lo);
+		for (int i = lo; i < end; i++) {
+			horizon.add(chains[i].clip(minX, maxX));
+		}
+		return horizon;
+	}
+	
+	/**
+	 * Simplifies all chains of this horizon in O(n) time.
+	 * Chain end points are kept, hence vertical jumps and gaps are preserved.
+	 * 
+	 * @param tolerance maximum vertical error in projected units
+	 * @return simplified horizon
+	 */
+	public Horizon simplify(double tolerance) {
+		Horizon horizon = new Horizon(m_chains.size());
+		
+		for(MonotoneChain mc: m_chains) {
+			horizon.add(mc.simplify(tolerance));
+		}
+		return horizon;
+	}
+	
+	/**
+	 * Creates a transformed copy of this horizon: (x, y) -> (x + dx, a*y + b)
+	 * 
+	 * @param dx horizontal shift
+	 * @param a vertical scaling factor (must be positive)
+	 * @param b vertical shift
+	 * @return transformed horizon
+	 */
+	public Horizon transform(double dx, double a, double b) {
+		Horizon horizon = new Horizon(m_chains.size());
+		
+		for(MonotoneChain mc: m_chains) {
+			horizon.add(mc.transform(dx, a, b));
+		}
+		return horizon;
+	}
+	
+	/**
+	 * Checks whether this 360 degree horizon is a closed curve around the cylinder,
+	 * i.e. both ends of the horizon meet at the seam at the same height
+	 * @return true if closed
+	 */
+	public boolean isClosed() {
+		if (m_chains.isEmpty()) return false;
+		
+		final Coordinate first = m_chains.get(0).getFirst();
+		final Coordinate last = getLast().getLast();
+		return first.x == -Main.SEAM_X && last.x == Main.SEAM_X && first.y == last.y;
+	}
+	
+	/**
+	 * Rotates a 360 degree horizon in [-SEAM_X, SEAM_X] such that it starts at x in O(n) time:
+	 * the part left of x is moved by one full turn behind the right end.
+	 * The two ends of the horizon are joined across the seam if they meet there.
+	 * 
+	 * @param x start of the rotated horizon in [-SEAM_X, SEAM_X]
+	 * @return horizon in [x, x + 2*SEAM_X]
+	 */
+	public Horizon rotate(double x) {
+		final double turn = 2*Main.SEAM_X;
+		Horizon horizon = new Horizon(m_chains.size() + 1);
+		ArrayList<MonotoneChain> moved = new ArrayList<>();
+		
+		for(MonotoneChain mc: m_chains) {
+			if (mc.getMinX() >= x) {
+				horizon.add(mc);
+			} else {
+				if (mc.getMaxX() > x) horizon.add(mc.clip(x, mc.getMaxX()));
+				
+				MonotoneChain left = mc.clip(mc.getMinX(), x);
+				if (left != null) {
+					left = left.transform(turn, 1, 0);
+					if (left != null) moved.add(left);
+				}
+			}
+		}
+		
+		// join the ends at the seam
+		if (!horizon.isEmpty() && !moved.isEmpty() && horizon.getLast().isLeftSiblingOf(moved.get(0))) {
+			moved.set(0, horizon.removeLast().join(moved.get(0)));
+		}
+		for(MonotoneChain mc: moved) {
+			horizon.add(mc);
+		}
+		return horizon;
+	}
+	
+	/**
+	 * Returns the height of this horizon at x in O(log n) time.
+	 * At a vertical jump between two chains the greater height is returned.
+	 * 
+	 * @param x x-coordinate
+	 * @return height at x or negative infinity if no chain covers x
+	 */
+	public double getY(double x) {
+		// first chain ending at or right of x
+		int lo = 0, hi = m_chains.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (m_chains.get(mid).getMaxX() < x) lo = mid + 1;
+			else hi = mid;
+		}
+		
+		double y = Double.NEGATIVE_INFINITY;
+		for (int i = lo; i < m_chains.size() && m_chains.get(i).getMinX() <= x; i++) {
+			y = Math.max(y, m_chains.get(i).getY(x));
+		}
+		return y;
+	}
+	
 	/**
 	 * Checks x-monotonicity of this horizon in O(n) time
 	 * @return true if x-monotone
@@ -91,11 +421,23 @@ public class Horizon {
 	}
 	
 	/**
-	 * Interface to JTS
-	 * @return LineString without duplicated points
+	 * Counts the vertices of all chains in O(n) time
+	 * @return number of vertices
 	 */
-	public LineString toLineString() {
-		// count coordinates
+	public int numVertices() {
+		int cnt = 0;
+		
+		for(MonotoneChain mc: m_chains) {
+			cnt += mc.size();
+		}
+		return cnt;
+	}
+	
+	/**
+	 * Counts the coordinates of this horizon without duplicated points of sibling chains in O(n) time
+	 * @return number of coordinates of the corresponding line string
+	 */
+	public int numCoordinates() {
 		int cnt = 0;
 		MonotoneChain prev = null;
 		
@@ -105,11 +447,26 @@ public class Horizon {
 			cnt += mc.size();
 			prev = mc;
 		}
-		
+		return cnt;
+	}
+	
+	/**
+	 * Returns the x-monotone list of chains
+	 * @return chains in increasing x-order (must not be modified)
+	 */
+	List<MonotoneChain> getChains() {
+		return m_chains;
+	}
+	
+	/**
+	 * Interface to JTS
+	 * @return LineString without duplicated points
+	 */
+	public LineString toLineString() {
 		// collect coordinates
-		Coordinate[] coords = new Coordinate[cnt];
-		cnt = 0;
-		prev = null;
+		Coordinate[] coords = new Coordinate[numCoordinates()];
+		int cnt = 0;
+		MonotoneChain prev = null;
 		for(MonotoneChain mc: m_chains) {
 			if (prev != null && prev.isLeftSiblingOf(mc)) {
 				System.arraycopy(mc.getCoords(), 1, coords, cnt, mc.size() - 1);
@@ -138,15 +495,62 @@ public class Horizon {
 		return new GeometryFactory().createMultiLineString(chains);
 	}
 	
+	/**
+	 * Writes all chains of this horizon in binary format
+	 * @param out output
+	 * @throws IOException
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(m_chains.size());
+		for(MonotoneChain mc: m_chains) {
+			out.writeInt(mc.size());
+			for(Coordinate c: mc.getCoords()) {
+				out.writeDouble(c.x);
+				out.writeDouble(c.y);
+			}
+		}
+	}
+	
+	/**
+	 * Reads a horizon written by write
+	 * @param in input
+	 * @return new horizon
+	 * @throws IOException
+	 */
+	public static Horizon read(DataInput in) throws IOException {
+		final int nChains = in.readInt();
+		Horizon horizon = new Horizon(nChains);
+		
+		for(int i = 0; i < nChains; i++) {
+			final int size = in.readInt();
+			ArrayList<Coordinate> coords = new ArrayList<>(size);
+			
+			for(int k = 0; k < size; k++) {
+				final double x = in.readDouble();
+				coords.add(new Coordinate(x, in.readDouble()));
+			}
+			horizon.add(MonotoneChain.create(coords));
+		}
+		return horizon;
+	}
+	
 	/**
 	 * Add new chain to horizon
 	 * @param mc x-monotone chain
 	 */
 	public void add(MonotoneChain mc) {
 		if (mc != null) {
-			assert m_chains.isEmpty() || m_chains.getLast().getMaxX() <= mc.getMinX();
+			assert m_chains.isEmpty() || getLast().getMaxX() <= mc.getMinX();
 			m_chains.add(mc);
 		}
 	}
 	
+	private MonotoneChain getLast() {
+		return m_chains.get(m_chains.size() - 1);
+	}
+	
+	private MonotoneChain removeLast() {
+		return m_chains.remove(m_chains.size() - 1);
+	}
+	
 }
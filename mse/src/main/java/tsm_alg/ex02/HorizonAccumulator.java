@@ -0,0 +1,79 @@
+package tsm_alg.ex02;
+
+import java.util.ArrayList;
+
+/**
+ * Running horizon of a stream of horizons, kept as a binary counter of horizons (logarithmic method).
+ * Level l holds the merged horizon of 2^l added horizons; a new horizon is merged with the full levels like a carry.
+ * Hence each added chain takes part in O(log m) merges of m added horizons, and a height query takes O(log m log h) time.
+ */
+public class HorizonAccumulator {
+	private final ArrayList<Horizon> m_levels = new ArrayList<>();	// level l is null or the merged horizon of 2^l horizons
+	private final int m_parallelism;								// maximal number of slabs of a merge
+
+	/**
+	 * Creates new accumulator with sequential merges
+	 */
+	public HorizonAccumulator() {
+		this(1);
+	}
+
+	/**
+	 * Creates new accumulator: large horizons are merged by concurrent sweeps, see Horizon.merge(Horizon, int)
+	 * @param parallelism maximal number of slabs of a merge
+	 */
+	public HorizonAccumulator(int parallelism) {
+		m_parallelism = parallelism;
+	}
+
+	/**
+	 * Adds a horizon: full levels are merged like a carry
+	 * @param h horizon
+	 */
+	public void add(Horizon h) {
+		for (int l = 0; l < m_levels.size(); l++) {
+			if (m_levels.get(l) == null) {
+				m_levels.set(l, h);
+				return;
+			}
+			h = m_levels.get(l).merge(h, m_parallelism);
+			m_levels.set(l, null);
+		}
+		m_levels.add(h);
+	}
+
+	/**
+	 * Adds a single chain
+	 * @param mc monotone chain
+	 */
+	public void add(MonotoneChain mc) {
+		add(new Horizon(mc));
+	}
+
+	/**
+	 * Returns the height of the running horizon at x
+	 * @param x x-coordinate
+	 * @return height at x or negative infinity if no chain covers x
+	 */
+	public double getY(double x) {
+		double y = Double.NEGATIVE_INFINITY;
+
+		for (Horizon h: m_levels) {
+			if (h != null) y = Math.max(y, h.getY(x));
+		}
+		return y;
+	}
+
+	/**
+	 * Merges all levels
+	 * @return horizon of all added horizons
+	 */
+	public Horizon getHorizon() {
+		Horizon horizon = null;
+
+		for (Horizon h: m_levels) {
+			if (h != null) horizon = (horizon == null) ? h : h.merge(horizon, m_parallelism);
+		}
+		return (horizon == null) ? new Horizon() : horizon;
+	}
+}
@@ -0,0 +1,288 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of computed horizons.
+ * <p>
+ * Viewpoints are snapped to a horizontal grid and to discrete eye heights; the horizon is computed
+ * for the snapped viewpoint, hence all viewpoints of the same grid point share one result.
+ * The key also contains the computation parameters (radius, tolerance, wraparound mode).
+ * The cache is bounded by the total number of vertices of the kept horizons and evicts the least recently used
+ * horizons first. Evicted horizons can be spilled into a directory and are read back on the next request.
+ * The cache is thread-safe; horizons are computed, spilled, and read back outside of the lock.
+ */
+public class HorizonCache {
+	/**
+	 * Computation of a horizon on a cache miss
+	 */
+	@FunctionalInterface
+	public interface Loader {
+		Horizon compute(Coordinate viewPoint, double radius, double tolerance, boolean wrapAround) throws InterruptedException;
+	}
+
+	/**
+	 * Snapped viewpoint and computation parameters
+	 */
+	private static final class Key {
+		private final long m_x, m_y, m_z;		// grid indices of snapped viewpoint
+		private final double m_radius, m_tolerance;
+		private final boolean m_wrapAround;
+
+		private Key(long x, long y, long z, double radius, double tolerance, boolean wrapAround) {
+			m_x = x; m_y = y; m_z = z;
+			m_radius = radius;
+			m_tolerance = tolerance;
+			m_wrapAround = wrapAround;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key)o;
+			return m_x == k.m_x && m_y == k.m_y && m_z == k.m_z && m_radius == k.m_radius && m_tolerance == k.m_tolerance && m_wrapAround == k.m_wrapAround;
+		}
+
+		@Override
+		public int hashCode() {
+			long h = m_x;
+			h = 31*h + m_y;
+			h = 31*h + m_z;
+			h = 31*h + Double.doubleToLongBits(m_radius);
+			h = 31*h + Double.doubleToLongBits(m_tolerance);
+			h = 31*h + (m_wrapAround ? 1 : 0);
+			return (int)(h ^ (h >>> 32));
+		}
+
+		/**
+		 * @return file name of spilled horizon
+		 */
+		private String fileName() {
+			return String.format("%d_%d_%d_%s_%s_%b.hrz", m_x, m_y, m_z, Double.toString(m_radius), Double.toString(m_tolerance), m_wrapAround);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////
+	private final Loader m_loader;
+	private final double m_gridSize;			// horizontal grid spacing of viewpoints in terrain units
+	private final double m_heightStep;			// vertical spacing of eye heights in terrain units
+	private final long m_maxVertices;			// capacity in number of vertices
+	private final LinkedHashMap<Key, Horizon> m_map = new LinkedHashMap<>(16, 0.75f, true);	// access order = LRU order
+	private long m_vertices;					// number of vertices of all cached horizons
+	private Path m_spillDir;					// directory of spilled horizons or null
+	private long m_hits, m_spillHits, m_misses, m_evictions, m_invalidations;
+
+	/**
+	 * Creates new cache
+	 *
+	 * @param loader computes horizons on cache misses
+	 * @param gridSize horizontal grid spacing of viewpoints in terrain units
+	 * @param heightStep vertical spacing of eye heights in terrain units
+	 * @param maxVertices capacity in number of vertices
+	 */
+	public HorizonCache(Loader loader, double gridSize, double heightStep, long maxVertices) {
+		if (!(gridSize > 0 && heightStep > 0)) throw new IllegalArgumentException("grid size and height step must be positive");
+		m_loader = loader;
+		m_gridSize = gridSize;
+		m_heightStep = heightStep;
+		m_maxVertices = maxVertices;
+	}
+
+	/**
+	 * Enables spilling of evicted horizons into a directory
+	 * @param dir existing directory or null to disable spilling
+	 */
+	public synchronized void setSpillDirectory(Path dir) {
+		m_spillDir = dir;
+	}
+
+	/**
+	 * Returns the snapped viewpoint the horizon is computed for
+	 * @param viewPoint viewpoint
+	 * @return snapped viewpoint
+	 */
+	public Coordinate snap(Coordinate viewPoint) {
+		return new Coordinate(Math.round(viewPoint.x/m_gridSize)*m_gridSize, Math.round(viewPoint.y/m_gridSize)*m_gridSize,
+				Math.round(viewPoint.z/m_heightStep)*m_heightStep);
+	}
+
+	/**
+	 * Returns the cached horizon of the snapped viewpoint or computes it
+	 *
+	 * @param viewPoint viewpoint
+	 * @param radius visible radius in terrain units
+	 * @param tolerance vertical tolerance of horizon simplification in projected units or 0
+	 * @param wrapAround true: full 360 degree panorama
+	 * @return horizon of the snapped viewpoint (must not be modified)
+	 * @throws InterruptedException
+	 */
+	public Horizon get(Coordinate viewPoint, double radius, double tolerance, boolean wrapAround) throws InterruptedException {
+		final Key key = new Key(Math.round(viewPoint.x/m_gridSize), Math.round(viewPoint.y/m_gridSize), Math.round(viewPoint.z/m_heightStep),
+				radius, tolerance, wrapAround);
+		Path spilled = null;
+		long generation;
+
+		synchronized(this) {
+			generation = m_invalidations;
+
+			Horizon h = m_map.get(key);
+			if (h != null) {
+				m_hits++;
+				return h;
+			}
+			if (m_spillDir != null) spilled = m_spillDir.resolve(key.fileName());
+		}
+
+		Horizon h = (spilled != null) ? readSpilled(spilled) : null;
+		if (h != null) {
+			synchronized(this) {
+				m_spillHits++;
+			}
+		} else {
+			h = m_loader.compute(snap(viewPoint), radius, tolerance, wrapAround);
+			synchronized(this) {
+				m_misses++;
+			}
+		}
+		put(key, h, generation);
+		return h;
+	}
+
+	/**
+	 * Removes all horizons from memory and spill directory, e.g. after the terrain of the loader has been replaced
+	 */
+	public synchronized void invalidate() {
+		m_map.clear();
+		m_vertices = 0;
+		m_invalidations++;
+		if (m_spillDir != null) {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(m_spillDir, "*.hrz")) {
+				for (Path f: files) Files.deleteIfExists(f);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return m_map.size();
+	}
+
+	public synchronized long getVertices() {
+		return m_vertices;
+	}
+
+	public synchronized long getHits() {
+		return m_hits;
+	}
+
+	public synchronized long getSpillHits() {
+		return m_spillHits;
+	}
+
+	public synchronized long getMisses() {
+		return m_misses;
+	}
+
+	public synchronized long getEvictions() {
+		return m_evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("horizons: %d, vertices: %d, hits: %d, spill hits: %d, misses: %d, evictions: %d, invalidations: %d",
+				m_map.size(), m_vertices, m_hits, m_spillHits, m_misses, m_evictions, m_invalidations);
+	}
+
+	/**
+	 * Inserts a horizon and evicts least recently used horizons until the capacity is respected.
+	 * A horizon computed before an invalidation is not inserted. Evicted horizons are spilled after releasing the lock.
+	 */
+	private void put(Key key, Horizon h, long generation) {
+		final ArrayList<Map.Entry<Key, Horizon>> evicted = new ArrayList<>();
+		final Path spillDir;
+
+		synchronized(this) {
+			if (generation != m_invalidations) return;
+
+			final Horizon old = m_map.put(key, h);
+
+			if (old != null) m_vertices -= old.numVertices();
+			m_vertices += h.numVertices();
+
+			Iterator<Map.Entry<Key, Horizon>> it = m_map.entrySet().iterator();
+			while (m_vertices > m_maxVertices && it.hasNext()) {
+				Map.Entry<Key, Horizon> e = it.next();
+
+				if (e.getKey().equals(key)) continue;	// keep the newest horizon
+				evicted.add(new AbstractMap.SimpleImmutableEntry<>(e));
+				it.remove();
+				m_vertices -= e.getValue().numVertices();
+				m_evictions++;
+			}
+			spillDir = m_spillDir;
+		}
+		if (spillDir != null) {
+			for (Map.Entry<Key, Horizon> e: evicted) spill(spillDir, e.getKey(), e.getValue(), generation);
+		}
+	}
+
+	/**
+	 * Writes an evicted horizon into a temporary file and renames it, hence readers never see partial files.
+	 * Write failures are ignored: the horizon is recomputed on the next request.
+	 */
+	private void spill(Path spillDir, Key key, Horizon h, long generation) {
+		final Path file = spillDir.resolve(key.fileName());
+		Path tmp = null;
+
+		if (Files.exists(file)) return;
+		try {
+			tmp = Files.createTempFile(spillDir, "spill", ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				h.write(out);
+			}
+			synchronized(this) {
+				// a horizon evicted before an invalidation must not be read back
+				if (generation == m_invalidations) {
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+					tmp = null;
+				}
+			}
+		} catch (IOException e) {
+			// ignored: spilling is optional
+		} finally {
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (IOException e) {
+					// ignored
+				}
+			}
+		}
+	}
+
+	private static Horizon readSpilled(Path file) {
+		if (!Files.exists(file)) return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			return Horizon.read(in);
+		} catch (IOException e) {
+			return null;	// e.g. removed by invalidation in the meantime: recompute
+		}
+	}
+}
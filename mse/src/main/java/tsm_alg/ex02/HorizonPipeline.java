@@ -0,0 +1,309 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Pipelined horizon computation of a triangulated terrain: load, triangulate, cull and project, merge.
+ * <p>
+ * The stages run concurrently and are connected by bounded queues of batches:
+ * <ul>
+ * <li>load: a reader thread parses the csv file into batches of points</li>
+ * <li>triangulate: the strips of the ParallelTriangulator are triangulated concurrently; each strip emits its
+ * triangles whose bounding box intersects the visible disc in batches as soon as it is done</li>
+ * <li>cull and project: workers turn triangle batches into chains with a ProjectionKernel each and compute the
+ * horizon of each batch</li>
+ * <li>merge: the calling thread adds the batch horizons to a HorizonAccumulator, large merges run as concurrent sweeps</li>
+ * </ul>
+ * All points are kept, hence the strip bounds and the triangles are the same as of ParallelTriangulator.triangulate
+ * and the horizon is the same as of the staged computation with a TriangleIndex.
+ * Neither the triangulation nor the list of all chains is materialized; besides the points, the peak memory is
+ * a few batches per queue and the partial horizons. The Delaunay triangulation needs all points of a strip,
+ * hence the triangulation starts after the last point has been read.
+ */
+public class HorizonPipeline {
+	public static final int BATCH_SIZE = ProjectionKernel.BATCH_SIZE;	// number of points or triangles per batch
+	private static final int QUEUE_CAPACITY = 4;						// number of batches per queue
+	private static final List<?> END = Collections.emptyList();			// end of stream marker
+	private static final Horizon END_OF_HORIZONS = new Horizon();		// end of stream marker of batch horizons
+
+	private final Coordinate m_viewPoint;
+	private final double m_radius;				// visible radius in terrain units
+	private final double m_overlap;				// overlap of triangulation strips in terrain units
+	private final boolean m_wrapAround;			// full 360 degree panorama
+	private final int m_parallelism;			// number of triangulation strips and projection workers
+
+	/**
+	 * Creates new pipeline
+	 *
+	 * @param viewPoint viewpoint = center of cylinder
+	 * @param radius visible radius in terrain units
+	 * @param overlap overlap of triangulation strips in terrain units
+	 * @param wrapAround true: full 360 degree panorama
+	 * @param parallelism number of triangulation strips and projection workers
+	 */
+	public HorizonPipeline(Coordinate viewPoint, double radius, double overlap, boolean wrapAround, int parallelism) {
+		m_viewPoint = viewPoint;
+		m_radius = radius;
+		m_overlap = overlap;
+		m_wrapAround = wrapAround;
+		m_parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Computes the horizon of the terrain points in a csv file: x-coord;y-coord;z-coord
+	 *
+	 * @param file csv file
+	 * @return horizon
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public Horizon run(Path file) throws IOException, InterruptedException {
+		try {
+			return run((points) -> read(file, points));
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Computes the horizon of terrain points given as primitive arrays, e.g. the points of a failed grid detection
+	 *
+	 * @param x x-coordinates
+	 * @param y y-coordinates
+	 * @param z heights
+	 * @param n number of points
+	 * @return horizon
+	 * @throws InterruptedException
+	 */
+	public Horizon run(double[] x, double[] y, double[] z, int n) throws InterruptedException {
+		try {
+			return run((points) -> load(x, y, z, n, points));
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Load stage: puts batches of points into the queue
+	 *
+	 * @param <E> checked exception of the source, e.g. IOException of a file
+	 */
+	private interface Loader<E extends Exception> {
+		void load(BlockingQueue<List<Coordinate>> points) throws E, InterruptedException;
+	}
+
+	/**
+	 * Runs all stages. A failed stage is reported as ExecutionException, so each caller rethrows the exceptions of its own loader.
+	 */
+	private Horizon run(Loader<?> loader) throws InterruptedException, ExecutionException {
+		final BlockingQueue<List<Coordinate>> points = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		final BlockingQueue<List<Polygon>> triangles = new ArrayBlockingQueue<>(QUEUE_CAPACITY*m_parallelism);
+		final BlockingQueue<Horizon> horizons = new ArrayBlockingQueue<>(QUEUE_CAPACITY*m_parallelism);
+		final ExecutorService executor = Executors.newFixedThreadPool(2*m_parallelism + 2);	// reader, projection workers, triangulation and its strips
+		final List<Future<?>> stages = new ArrayList<>();
+
+		try {
+			// load
+			stages.add(executor.submit(() -> {
+				try {
+					loader.load(points);
+				} finally {
+					put(points, end());
+				}
+				return null;
+			}));
+
+			// cull, project and compute batch horizons
+			for (int w = 0; w < m_parallelism; w++) {
+				stages.add(executor.submit(() -> {
+					try {
+						project(triangles, horizons);
+					} finally {
+						put(horizons, END_OF_HORIZONS);
+					}
+					return null;
+				}));
+			}
+
+			// collect points and triangulate
+			final ArrayList<Coordinate> pts = new ArrayList<>();
+			for (List<Coordinate> batch = points.take(); batch != END; batch = points.take()) {
+				pts.addAll(batch);
+			}
+			stages.add(executor.submit(() -> {
+				try {
+					triangulate(pts, executor, triangles);
+				} finally {
+					for (int w = 0; w < m_parallelism; w++) put(triangles, end());
+				}
+				return null;
+			}));
+
+			// merge
+			final HorizonAccumulator horizon = new HorizonAccumulator(m_parallelism);
+			int running = m_parallelism;
+			while (running > 0) {
+				Horizon h = horizons.take();
+
+				if (h == END_OF_HORIZONS) {
+					running--;
+				} else {
+					horizon.add(h);
+				}
+			}
+			for (Future<?> f: stages) f.get();
+			return horizon.getHorizon();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Load stage: parses the csv file into batches of points
+	 */
+	private void read(Path file, BlockingQueue<List<Coordinate>> points) throws IOException, InterruptedException {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+			ArrayList<Coordinate> batch = new ArrayList<>(BATCH_SIZE);
+			String s;
+
+			while ((s = reader.readLine()) != null) {
+				String[] parts = s.split(";");
+
+				batch.add(new Coordinate(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2])));
+				if (batch.size() == BATCH_SIZE) {
+					points.put(batch);
+					batch = new ArrayList<>(BATCH_SIZE);
+				}
+			}
+			if (!batch.isEmpty()) points.put(batch);
+		}
+	}
+
+	/**
+	 * Load stage: batches the points of primitive arrays
+	 */
+	private void load(double[] x, double[] y, double[] z, int n, BlockingQueue<List<Coordinate>> points) throws InterruptedException {
+		ArrayList<Coordinate> batch = new ArrayList<>(BATCH_SIZE);
+
+		for (int i = 0; i < n; i++) {
+			batch.add(new Coordinate(x[i], y[i], z[i]));
+			if (batch.size() == BATCH_SIZE) {
+				points.put(batch);
+				batch = new ArrayList<>(BATCH_SIZE);
+			}
+		}
+		if (!batch.isEmpty()) points.put(batch);
+	}
+
+	/**
+	 * Triangulation stage: strips are triangulated concurrently and emit batches of triangles within the visible radius.
+	 * The strips are the same as of ParallelTriangulator.triangulate.
+	 */
+	private void triangulate(List<Coordinate> pts, ExecutorService executor, BlockingQueue<List<Polygon>> triangles) throws InterruptedException, ExecutionException {
+		if (pts.size() < 3) return;
+
+		final GeometryFactory factory = new GeometryFactory();
+		final Coordinate[] sorted = ParallelTriangulator.sortByX(pts);
+		final int strips = (m_parallelism <= 1 || pts.size() < 2*m_parallelism) ? 1 : m_parallelism;
+		final double[] bounds = ParallelTriangulator.stripBounds(sorted, strips);
+		final List<Future<?>> tasks = new ArrayList<>(strips);
+
+		for (int i = 0; i < strips; i++) {
+			final int strip = i;
+
+			tasks.add(executor.submit(() -> {
+				ArrayList<Polygon> batch = new ArrayList<>(BATCH_SIZE);
+
+				for (Polygon p: ParallelTriangulator.triangulateStrip(sorted, bounds, strip, m_overlap, factory)) {
+					if (isWithinRadius(p)) {
+						batch.add(p);
+						if (batch.size() == BATCH_SIZE) {
+							triangles.put(batch);
+							batch = new ArrayList<>(BATCH_SIZE);
+						}
+					}
+				}
+				if (!batch.isEmpty()) triangles.put(batch);
+				return null;
+			}));
+		}
+		for (Future<?> f: tasks) f.get();
+	}
+
+	/**
+	 * Projection stage: culls and projects batches of triangles and computes their horizons until the end marker
+	 */
+	private void project(BlockingQueue<List<Polygon>> triangles, BlockingQueue<Horizon> horizons) throws InterruptedException {
+		final ProjectionKernel kernel = new ProjectionKernel(m_wrapAround);
+		final double[] vertices = new double[9*BATCH_SIZE];
+		final int[] indices = new int[BATCH_SIZE];
+
+		for (int k = 0; k < BATCH_SIZE; k++) indices[k] = k;
+		for (List<Polygon> batch = triangles.take(); batch != END; batch = triangles.take()) {
+			final int n = batch.size();
+			ArrayList<MonotoneChain> result = new ArrayList<>(n);
+
+			// pack vertices: x, y, z of three vertices per triangle
+			for (int k = 0; k < n; k++) {
+				Coordinate[] c = batch.get(k).getExteriorRing().getCoordinates();
+				for (int i = 0; i < 3; i++) {
+					vertices[9*k + 3*i] = c[i].x;
+					vertices[9*k + 3*i + 1] = c[i].y;
+					vertices[9*k + 3*i + 2] = c[i].z;
+				}
+			}
+			kernel.computeChains(m_viewPoint, vertices, indices, n, result);
+			if (!result.isEmpty()) {
+				Main.sortChains(result);
+				horizons.put(Main.computeHorizon(result));
+			}
+		}
+	}
+
+	/**
+	 * @return true if the bounding box of the triangle intersects the visible disc, see TriangleIndex.queryRadius
+	 */
+	private boolean isWithinRadius(Polygon p) {
+		Coordinate[] c = p.getExteriorRing().getCoordinates();
+		final double minX = Math.min(c[0].x, Math.min(c[1].x, c[2].x)), maxX = Math.max(c[0].x, Math.max(c[1].x, c[2].x));
+		final double minY = Math.min(c[0].y, Math.min(c[1].y, c[2].y)), maxY = Math.max(c[0].y, Math.max(c[1].y, c[2].y));
+		final double dx = Math.max(0, Math.max(minX - m_viewPoint.x, m_viewPoint.x - maxX));
+		final double dy = Math.max(0, Math.max(minY - m_viewPoint.y, m_viewPoint.y - maxY));
+
+		return dx*dx + dy*dy <= m_radius*m_radius;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> end() {
+		return (List<T>)END;
+	}
+
+	/**
+	 * Puts the end marker; gives up if the pipeline is shut down
+	 */
+	private static <T> void put(BlockingQueue<T> queue, T marker) {
+		try {
+			queue.put(marker);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,396 @@
+package tsm_alg.ex02;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived local HTTP service for horizon queries.
+ * <p>
+ * The terrain (grid or triangle index) is loaded once and kept resident. A query
+ * GET /horizon?x=..&y=..&z=..[&radius=..][&tolerance=..][&wrap=true|false][&format=wkt|binary|binary32][&decimals=..]
+ * returns the horizon seen from viewpoint (x, y, z), streamed by HorizonWriter in compact WKT or binary format.
+ * Each request is handled by its own thread: a virtual thread if the Java runtime supports them, otherwise a pooled thread.
+ * The compute stages run in one fork/join pool, hence the CPU parallelism is bounded independently of the number of requests.
+ * Optionally, computed horizons are kept in a HorizonCache.
+ * The terrain file can be watched: a changed file is reloaded, the new terrain is swapped in atomically, and the cache
+ * is invalidated.
+ */
+public class HorizonServer {
+	public static final String CONTEXT = "/horizon";
+
+	/**
+	 * Resident terrain: either grid or triangle index
+	 */
+	private static final class Terrain {
+		private final GridTerrain m_grid;
+		private final TriangleIndex m_index;
+
+		private Terrain(GridTerrain grid, TriangleIndex index) {
+			m_grid = grid;
+			m_index = index;
+		}
+	}
+
+	private volatile Terrain m_terrain;			// resident terrain, replaced as a whole on reload
+	private final double m_radius;				// default visible radius in terrain units
+	private final ForkJoinPool m_pool;			// bounded pool of compute stages
+	private volatile HorizonCache m_cache;		// cache of computed horizons or null
+	private ExecutorService m_executor;			// request threads
+	private HttpServer m_server;
+	private ScheduledExecutorService m_watcher;	// terrain file watcher or null
+	private FileTime m_modified;				// modification time of the loaded terrain file, accessed by the watcher only
+	private long m_size;						// size of the loaded terrain file, accessed by the watcher only
+
+	/**
+	 * Creates new server on a regular grid terrain
+	 *
+	 * @param grid terrain
+	 * @param radius default visible radius in terrain units
+	 * @param parallelism number of threads of the compute stages
+	 */
+	public HorizonServer(GridTerrain grid, double radius, int parallelism) {
+		this(new Terrain(grid, null), radius, parallelism);
+	}
+
+	/**
+	 * Creates new server on a triangulated terrain
+	 *
+	 * @param index spatial index of the triangulation
+	 * @param radius default visible radius in terrain units
+	 * @param parallelism number of threads of the compute stages
+	 */
+	public HorizonServer(TriangleIndex index, double radius, int parallelism) {
+		this(new Terrain(null, index), radius, parallelism);
+	}
+
+	private HorizonServer(Terrain terrain, double radius, int parallelism) {
+		m_terrain = terrain;
+		m_radius = radius;
+		m_pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Sets a cache of computed horizons: requests are answered with the horizon of the snapped viewpoint
+	 * @param cache horizon cache or null
+	 */
+	public void setCache(HorizonCache cache) {
+		m_cache = cache;
+	}
+
+	/**
+	 * Replaces the resident terrain by a grid terrain and invalidates the cache
+	 * @param grid terrain
+	 */
+	public void setTerrain(GridTerrain grid) {
+		replaceTerrain(new Terrain(grid, null));
+	}
+
+	/**
+	 * Replaces the resident terrain by a triangulated terrain and invalidates the cache
+	 * @param index spatial index of the triangulation
+	 */
+	public void setTerrain(TriangleIndex index) {
+		replaceTerrain(new Terrain(null, index));
+	}
+
+	/**
+	 * Swaps the terrain before invalidating the cache: a horizon computed on the old terrain was requested before
+	 * the invalidation, hence it is not inserted into the cache
+	 */
+	private void replaceTerrain(Terrain terrain) {
+		final HorizonCache cache = m_cache;
+
+		m_terrain = terrain;
+		if (cache != null) cache.invalidate();
+	}
+
+	/**
+	 * Watches the terrain file: if its modification time or size changes, the terrain is reloaded and replaced.
+	 * A failed reload keeps the resident terrain and is retried at the next change.
+	 *
+	 * @param file terrain file in csv format, the file of the resident terrain
+	 * @param cellSize cell size of triangle index in terrain units
+	 * @param overlap overlap of triangulation strips in terrain units
+	 * @param period polling period in milliseconds
+	 * @throws IOException
+	 */
+	public synchronized void watchTerrain(Path file, double cellSize, double overlap, long period) throws IOException {
+		if (m_watcher != null) throw new IllegalStateException("terrain file is already watched");
+
+		m_modified = Files.getLastModifiedTime(file);
+		m_size = Files.size(file);
+		m_watcher = Executors.newSingleThreadScheduledExecutor((r) -> {
+			Thread t = new Thread(r, "terrain watcher");
+			t.setDaemon(true);
+			return t;
+		});
+		m_watcher.scheduleWithFixedDelay(() -> checkTerrain(file, cellSize, overlap), period, period, TimeUnit.MILLISECONDS);
+	}
+
+	private void checkTerrain(Path file, double cellSize, double overlap) {
+		try {
+			final FileTime modified = Files.getLastModifiedTime(file);
+			final long size = Files.size(file);
+
+			if (modified.equals(m_modified) && size == m_size) return;
+
+			// a file changed during loading is loaded again at the next check
+			final Terrain terrain = loadTerrain(file, cellSize, overlap, m_pool.getParallelism());
+			m_modified = modified;
+			m_size = size;
+			replaceTerrain(terrain);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("reloading terrain " + file + " failed: " + e);
+		}
+	}
+
+	/**
+	 * Loads a terrain: a regular grid if the points form one, otherwise a triangle index of the triangulated points
+	 */
+	private static Terrain loadTerrain(Path file, double cellSize, double overlap, int parallelism) throws IOException {
+		final double[][] xyz = IO.readTerrainArrays(file);
+		final GridTerrain grid = GridTerrain.create(xyz[0], xyz[1], xyz[2], xyz[0].length);
+
+		if (grid != null) return new Terrain(grid, null);
+
+		final List<Coordinate> terrainPts = IO.toCoordinates(xyz);
+		final Geometry triangles = ParallelTriangulator.triangulate(terrainPts, new GeometryFactory(), parallelism, overlap);
+
+		return new Terrain(null, new TriangleIndex(triangles, cellSize));
+	}
+
+	/**
+	 * Starts listening on the loopback interface
+	 *
+	 * @param port port number or 0 for an ephemeral port
+	 * @return bound port number
+	 * @throws IOException
+	 */
+	public int start(int port) throws IOException {
+		m_server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		m_executor = newRequestExecutor();
+		m_server.setExecutor(m_executor);
+		m_server.createContext(CONTEXT, this::handle);
+		m_server.start();
+		return m_server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the server and the terrain file watcher: running requests are given at most one second
+	 */
+	public synchronized void stop() {
+		if (m_watcher != null) {
+			m_watcher.shutdownNow();
+			m_watcher = null;
+		}
+		if (m_server != null) {
+			m_server.stop(1);
+			m_executor.shutdown();
+			m_server = null;
+		}
+		m_pool.shutdown();
+	}
+
+	/**
+	 * Computes the horizon of a viewpoint in the compute pool
+	 *
+	 * @param viewPoint viewpoint = center of cylinder
+	 * @param radius visible radius in terrain units
+	 * @param tolerance vertical tolerance of horizon simplification in projected units or 0
+	 * @param wrapAround true: full 360 degree panorama
+	 * @return horizon
+	 * @throws InterruptedException
+	 */
+	public Horizon computeHorizon(Coordinate viewPoint, double radius, double tolerance, boolean wrapAround) throws InterruptedException {
+		try {
+			return m_pool.submit(() -> {
+				final Terrain terrain = m_terrain;
+				ArrayList<MonotoneChain> chains;
+
+				if (terrain.m_grid != null) {
+					chains = terrain.m_grid.computeChains(viewPoint, radius, wrapAround);
+				} else {
+					chains = Main.computeChains(terrain.m_index, viewPoint, radius, wrapAround);
+				}
+				Main.sortChains(chains);
+				// this task already runs in m_pool: fork the recursion instead of invoking the pool again
+				Horizon horizon = new Main.HorizonTask(chains, m_pool.getParallelism()).fork().join();
+
+				return (tolerance > 0) ? horizon.simplify(tolerance) : horizon;
+			}).get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "only GET is supported");
+				return;
+			}
+
+			Map<String, String> params = parseQuery(exchange.getRequestURI());
+			Coordinate viewPoint = new Coordinate(getDouble(params, "x", Double.NaN), getDouble(params, "y", Double.NaN), getDouble(params, "z", Double.NaN));
+			double radius = getDouble(params, "radius", m_radius);
+			double tolerance = getDouble(params, "tolerance", 0);
+			boolean wrapAround = Boolean.parseBoolean(params.getOrDefault("wrap", "false"));
+			String format = params.getOrDefault("format", "wkt");
+			int decimals = getInt(params, "decimals", 3);
+
+			// validate all parameters before computing the horizon and sending the response headers
+			if (!"wkt".equals(format) && !"binary".equals(format) && !"binary32".equals(format)) {
+				throw new IllegalArgumentException("unknown format: " + format);
+			}
+			if (!isFinite(viewPoint.x) || !isFinite(viewPoint.y) || !isFinite(viewPoint.z)) {
+				throw new IllegalArgumentException("viewpoint is not finite");
+			}
+			if (!(radius >= 0)) throw new IllegalArgumentException("wrong radius: " + radius);
+			if (!(tolerance >= 0)) throw new IllegalArgumentException("wrong tolerance: " + tolerance);
+			if (decimals < 0 || decimals > HorizonWriter.MAX_DECIMALS) throw new IllegalArgumentException("decimals out of range: " + decimals);
+
+			Horizon horizon = (m_cache != null)
+					? m_cache.get(viewPoint, radius, tolerance, wrapAround)
+					: computeHorizon(viewPoint, radius, tolerance, wrapAround);
+
+			// stream response with chunked transfer encoding
+			exchange.getResponseHeaders().set("Content-Type", "wkt".equals(format) ? "text/plain; charset=us-ascii" : "application/octet-stream");
+			exchange.sendResponseHeaders(200, 0);
+			try (HorizonWriter writer = new HorizonWriter(Channels.newChannel(exchange.getResponseBody()))) {
+				if ("wkt".equals(format)) {
+					writer.setDecimals(decimals);
+					writer.writeWKT(horizon);
+				} else {
+					writer.writeBinary(horizon, "binary32".equals(format));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			sendError(exchange, 400, e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			sendError(exchange, 503, "interrupted");
+		} catch (RuntimeException e) {
+			// keep the details in the server log, the client only learns that the request failed
+			System.err.println("request " + exchange.getRequestURI() + " failed");
+			e.printStackTrace();
+			sendError(exchange, 500, "internal server error");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+		byte[] body = (message + "\n").getBytes(StandardCharsets.US_ASCII);
+
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=us-ascii");
+		exchange.sendResponseHeaders(code, body.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+
+	private static Map<String, String> parseQuery(URI uri) {
+		Map<String, String> params = new HashMap<>();
+		String query = uri.getQuery();
+
+		if (query != null) {
+			for (String param: query.split("&")) {
+				int i = param.indexOf('=');
+				if (i > 0) params.put(param.substring(0, i), param.substring(i + 1));
+			}
+		}
+		return params;
+	}
+
+	private static double getDouble(Map<String, String> params, String name, double defaultValue) {
+		String value = params.get(name);
+
+		if (value == null) {
+			if (Double.isNaN(defaultValue)) throw new IllegalArgumentException("missing parameter: " + name);
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("wrong number: " + name + "=" + value);
+		}
+	}
+
+	private static int getInt(Map<String, String> params, String name, int defaultValue) {
+		String value = params.get(name);
+
+		if (value == null) return defaultValue;
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("wrong integer: " + name + "=" + value);
+		}
+	}
+
+	private static boolean isFinite(double d) {
+		return !Double.isNaN(d) && !Double.isInfinite(d);
+	}
+
+	/**
+	 * Creates a virtual thread per task executor, if available (Java 21+), otherwise a cached thread pool
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Loads the terrain and starts the server
+	 *
+	 * @param args [port]
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		final int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
+		final double radius = 20000;	// default visible radius in terrain units
+		final double cellSize = 500;	// cell size of triangle index in terrain units
+		final double overlap = 250;		// overlap of triangulation strips in terrain units
+		final int parallelism = Runtime.getRuntime().availableProcessors();
+		final double gridSize = 25;				// horizontal grid spacing of cached viewpoints in terrain units
+		final double heightStep = 1;			// vertical spacing of cached eye heights in terrain units
+		final long cacheSize = 10000000;		// capacity of horizon cache in vertices
+		final long watchPeriod = 5000;			// polling period of the terrain file in milliseconds
+
+		final Path file = Paths.get(HorizonServer.class.getResource("/tsm_alg/ex02/").getPath(), "Zurich25m.csv");
+		HorizonServer server = new HorizonServer(loadTerrain(file, cellSize, overlap, parallelism), radius, parallelism);
+
+		HorizonCache cache = new HorizonCache(server::computeHorizon, gridSize, heightStep, cacheSize);
+		server.setCache(cache);
+		server.watchTerrain(file, cellSize, overlap, watchPeriod);
+
+		System.out.println("listening on http://localhost:" + server.start(port) + CONTEXT);
+	}
+}
@@ -0,0 +1,201 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming writer of horizons. The coordinates are taken directly from the chains of a horizon
+ * and written through a fixed size buffer, hence neither a line string nor a formatted string
+ * of the whole horizon is built in memory.
+ * <p>
+ * Supported formats:
+ * <ul>
+ * <li>compact WKT line string, optionally embedded in a JTS TestBuilder xml file</li>
+ * <li>binary format: header followed by (x,y) pairs in double or float precision</li>
+ * </ul>
+ * Binary layout (big endian): int magic, int precision (8 = double, 4 = float), int number of points,
+ * followed by the points.
+ */
+public class HorizonWriter implements Closeable {
+	public static final int MAGIC = 0x48525A4E;		// "HRZN"
+	public static final int MAX_DECIMALS = 8;		// maximum number of decimal places in WKT
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final long[] POW10 = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000 };
+
+	private WritableByteChannel m_channel;
+	private ByteBuffer m_buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private byte[] m_digits = new byte[20];		// scratch space of number formatting
+	private int m_decimals = 3;					// number of decimal places in WKT
+
+	/**
+	 * Creates new writer
+	 * @param channel output channel, e.g. a FileChannel
+	 */
+	public HorizonWriter(WritableByteChannel channel) {
+		m_channel = channel;
+	}
+
+	/**
+	 * Set number of decimal places of coordinates in WKT output
+	 * @param decimals number of decimal places [0..8]
+	 */
+	public void setDecimals(int decimals) {
+		if (decimals < 0 || decimals > MAX_DECIMALS) throw new IllegalArgumentException("decimals out of range: " + decimals);
+		m_decimals = decimals;
+	}
+
+	/**
+	 * Writes horizon as JTS TestBuilder xml file with one geometry
+	 * @param desc description of the test case
+	 * @param horizon horizon
+	 * @throws IOException
+	 */
+	public void writeXML(String desc, Horizon horizon) throws IOException {
+		write("<run><case><desc>" + desc + "</desc>\n<a>");
+		writeWKT(horizon);
+		write("</a>\n</case></run>\n");
+	}
+
+	/**
+	 * Writes horizon as a single compact WKT line string without duplicated points
+	 * @param horizon horizon
+	 * @throws IOException
+	 */
+	public void writeWKT(Horizon horizon) throws IOException {
+		if (horizon.isEmpty()) {
+			write("LINESTRING EMPTY");
+			return;
+		}
+
+		boolean first = true;
+		MonotoneChain prev = null;
+
+		write("LINESTRING (");
+		for(MonotoneChain mc: horizon.getChains()) {
+			final Coordinate[] coords = mc.getCoords();
+
+			for (int i = (prev != null && prev.isLeftSiblingOf(mc)) ? 1 : 0; i < coords.length; i++) {
+				ensureCapacity(80);
+				if (!first) m_buffer.put((byte)',').put((byte)' ');
+				writeNumber(coords[i].x);
+				m_buffer.put((byte)' ');
+				writeNumber(coords[i].y);
+				first = false;
+			}
+			prev = mc;
+		}
+		write(")");
+	}
+
+	/**
+	 * Writes horizon in binary format
+	 * @param horizon horizon
+	 * @param singlePrecision true: coordinates are written as float pairs, false: as double pairs
+	 * @throws IOException
+	 */
+	public void writeBinary(Horizon horizon, boolean singlePrecision) throws IOException {
+		MonotoneChain prev = null;
+
+		ensureCapacity(12);
+		m_buffer.putInt(MAGIC).putInt(singlePrecision ? 4 : 8).putInt(horizon.numCoordinates());
+		for(MonotoneChain mc: horizon.getChains()) {
+			final Coordinate[] coords = mc.getCoords();
+
+			for (int i = (prev != null && prev.isLeftSiblingOf(mc)) ? 1 : 0; i < coords.length; i++) {
+				ensureCapacity(16);
+				if (singlePrecision) {
+					m_buffer.putFloat((float)coords[i].x).putFloat((float)coords[i].y);
+				} else {
+					m_buffer.putDouble(coords[i].x).putDouble(coords[i].y);
+				}
+			}
+			prev = mc;
+		}
+	}
+
+	/**
+	 * Writes all buffered bytes to the channel
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		m_buffer.flip();
+		while (m_buffer.hasRemaining()) {
+			m_channel.write(m_buffer);
+		}
+		m_buffer.clear();
+	}
+
+	/**
+	 * Flushes the buffer and closes the channel
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		m_channel.close();
+	}
+
+	private void ensureCapacity(int n) throws IOException {
+		if (m_buffer.remaining() < n) flush();
+	}
+
+	private void write(String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+		for (int i = 0; i < bytes.length; i += BUFFER_SIZE) {
+			int len = Math.min(BUFFER_SIZE, bytes.length - i);
+			ensureCapacity(len);
+			m_buffer.put(bytes, i, len);
+		}
+	}
+
+	/**
+	 * Writes a number in fixed point notation with at most m_decimals decimal places.
+	 * Trailing zeros are omitted. Numbers that cannot be scaled to a long are written by Double.toString.
+	 * @param v number
+	 */
+	private void writeNumber(double v) throws IOException {
+		final long pow = POW10[m_decimals];
+
+		if (Double.isNaN(v) || Math.abs(v) >= Long.MAX_VALUE/pow) {
+			write(Double.toString(v));
+			return;
+		}
+
+		long scaled = Math.round(v*pow);
+		if (scaled < 0) {
+			m_buffer.put((byte)'-');
+			scaled = -scaled;
+		}
+		long intPart = scaled/pow;
+		long fracPart = scaled%pow;
+
+		// integer part
+		int n = 0;
+		do {
+			m_digits[n++] = (byte)('0' + intPart%10);
+			intPart /= 10;
+		} while (intPart > 0);
+		while (n > 0) m_buffer.put(m_digits[--n]);
+
+		// fractional part without trailing zeros
+		if (fracPart > 0) {
+			int d = m_decimals;
+			while (fracPart%10 == 0) {
+				fracPart /= 10;
+				d--;
+			}
+			m_buffer.put((byte)'.');
+			for (int i = 0; i < d; i++) {
+				m_digits[i] = (byte)('0' + fracPart%10);
+				fracPart /= 10;
+			}
+			while (d > 0) m_buffer.put(m_digits[--d]);
+		}
+	}
+}
@@ -1,11 +1,22 @@
 package tsm_alg.ex02;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.vividsolutions.jts.geom.Coordinate;
@@ -48,6 +59,76 @@ public class IO {
 		return terrain;
 	}
 	
+	/**
+	 * Read terrain points in csv format: x-coord;y-coord;z-coord and detect a regular grid.
+	 * No Coordinate instances are created.
+	 * 
+	 * @param fileName
+	 * @return new created grid terrain or null if the points do not form a regular grid
+	 * @throws IOException
+	 */
+	static GridTerrain readGridTerrain(String fileName) throws IOException {
+		double[][] xyz = readTerrainArrays(fileName);
+		return GridTerrain.create(xyz[0], xyz[1], xyz[2], xyz[0].length);
+	}
+	
+	/**
+	 * Read terrain points in csv format: x-coord;y-coord;z-coord into primitive arrays.
+	 * The arrays can be used for grid detection and, if that fails, for triangulation without reading the file again.
+	 * 
+	 * @param fileName
+	 * @return new created arrays of equal length: x-coordinates, y-coordinates, heights
+	 * @throws IOException
+	 */
+	static double[][] readTerrainArrays(String fileName) throws IOException {
+		return readTerrainArrays(Paths.get(s_path + fileName));
+	}
+	
+	/**
+	 * Read terrain points in csv format: x-coord;y-coord;z-coord into primitive arrays.
+	 * 
+	 * @param file terrain file
+	 * @return new created arrays of equal length: x-coordinates, y-coordinates, heights
+	 * @throws IOException
+	 */
+	static double[][] readTerrainArrays(Path file) throws IOException {
+		double[] x = new double[1024], y = new double[1024], z = new double[1024];
+		int n = 0;
+		
+		try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+			String s;
+			while ((s = reader.readLine()) != null) {
+				String[] parts = s.split(";");
+				if (n == x.length) {
+					x = Arrays.copyOf(x, 2*n);
+					y = Arrays.copyOf(y, 2*n);
+					z = Arrays.copyOf(z, 2*n);
+				}
+				x[n] = Double.parseDouble(parts[0]);
+				y[n] = Double.parseDouble(parts[1]);
+				z[n] = Double.parseDouble(parts[2]);
+				n++;
+			}
+		}
+		return new double[][] { Arrays.copyOf(x, n), Arrays.copyOf(y, n), Arrays.copyOf(z, n) };
+	}
+	
+	/**
+	 * Creates terrain points of arrays read by readTerrainArrays
+	 * 
+	 * @param xyz x-coordinates, y-coordinates, heights
+	 * @return new created ArrayList of Coordinate instances
+	 */
+	static List<Coordinate> toCoordinates(double[][] xyz) {
+		final int n = xyz[0].length;
+		ArrayList<Coordinate> terrain = new ArrayList<Coordinate>(n);
+		
+		for (int i = 0; i < n; i++) {
+			terrain.add(new Coordinate(xyz[0][i], xyz[1][i], xyz[2][i]));
+		}
+		return terrain;
+	}
+	
 	/**
 	 * Writes one or two geometries (geometry collections) into a xml file. 
 	 * The file can be read and the content can be visualized by the JTS TestBuilder.
@@ -70,5 +151,64 @@ public class IO {
 		ps.println(epilog);
 		ps.close();
 	}
+	
+	/**
+	 * Streams a horizon as compact WKT line string into a xml file.
+	 * The file can be read and the content can be visualized by the JTS TestBuilder.
+	 * 
+	 * @param fileName
+	 * @param horizon horizon
+	 * @throws IOException
+	 */
+	static void writeXML(String fileName, Horizon horizon) throws IOException {
+		try (HorizonWriter writer = new HorizonWriter(openChannel(fileName))) {
+			writer.writeXML(fileName, horizon);
+		}
+	}
+	
+	/**
+	 * Streams a horizon in binary format into a file.
+	 * 
+	 * @param fileName
+	 * @param horizon horizon
+	 * @param singlePrecision true: float pairs, false: double pairs
+	 * @throws IOException
+	 */
+	static void writeBinary(String fileName, Horizon horizon, boolean singlePrecision) throws IOException {
+		try (HorizonWriter writer = new HorizonWriter(openChannel(fileName))) {
+			writer.writeBinary(horizon, singlePrecision);
+		}
+	}
+	
+	/**
+	 * Writes a triangle index into a binary file.
+	 * 
+	 * @param fileName
+	 * @param index triangle index
+	 * @throws IOException
+	 */
+	static void writeTriangleIndex(String fileName, TriangleIndex index) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(s_path + fileName)))) {
+			index.write(out);
+		}
+	}
+	
+	/**
+	 * Reads a triangle index written by writeTriangleIndex.
+	 * 
+	 * @param fileName
+	 * @return new triangle index
+	 * @throws IOException
+	 */
+	static TriangleIndex readTriangleIndex(String fileName) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(s_path + fileName)))) {
+			return TriangleIndex.read(in);
+		}
+	}
+	
+	private static FileChannel openChannel(String fileName) throws IOException {
+		return FileChannel.open(Paths.get(s_path + fileName), 
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
 
 }
@@ -0,0 +1,200 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Viewpoint-coherent horizon computation for moving observers.
+ * <p>
+ * The cells of a triangle index are used as tiles. For each tile the horizon of its
+ * front facing triangles is kept together with the viewpoint it has been computed for (anchor).
+ * If the viewpoint moves, the horizon of a far-field tile is not recomputed, but reprojected by
+ * an affine transformation derived from the tile center. Only near-field tiles, whose estimated
+ * reprojection error exceeds the admissible error, are recomputed from their triangles.
+ * The resulting horizon is the merge of all tile horizons.
+ */
+public class IncrementalHorizon {
+	/**
+	 * Non-empty cell of the triangle index
+	 */
+	private static class Tile {
+		private int m_cell;						// cell number in triangle index
+		private double m_cx, m_cy;				// center
+		private double m_radius;				// horizontal radius of the tile
+		private double m_minZ = Double.POSITIVE_INFINITY, m_maxZ = Double.NEGATIVE_INFINITY;
+		private Horizon m_horizon;				// horizon seen from anchor
+		private QuantizedChains m_quantized;	// quantized horizon seen from anchor (reduced-precision mode)
+		private Coordinate m_anchor;			// viewpoint of the tile horizon
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////
+	private TriangleIndex m_index;		// spatial index of the triangulation
+	private Tile[] m_tiles;				// non-empty tiles
+	private double m_maxError;			// admissible reprojection error in projected units
+	private double m_quantum;			// lattice spacing of quantized tile horizons or 0
+	private int m_recomputed;			// number of recomputed tiles in last update
+
+	/**
+	 * Creates new incremental horizon computation
+	 *
+	 * @param triangles triangulation of the terrain
+	 * @param tileSize side length of a tile in terrain units
+	 * @param maxError admissible error of reprojected tiles in projected units
+	 */
+	public IncrementalHorizon(Geometry triangles, double tileSize, double maxError) {
+		this(new TriangleIndex(triangles, tileSize), maxError);
+	}
+
+	/**
+	 * Creates new incremental horizon computation using the cells of a triangle index as tiles
+	 *
+	 * @param index spatial index of the triangulation
+	 * @param maxError admissible error of reprojected tiles in projected units
+	 */
+	public IncrementalHorizon(TriangleIndex index, double maxError) {
+		ArrayList<Tile> tiles = new ArrayList<>();
+
+		m_index = index;
+		m_maxError = maxError;
+		for (int cell = 0; cell < index.getNumCells(); cell++) {
+			if (index.getCellSize(cell) > 0) {
+				final Tile t = new Tile();
+				final Envelope env = index.getCellEnvelope(cell);
+
+				t.m_cell = cell;
+				t.m_cx = env.centre().x;
+				t.m_cy = env.centre().y;
+				t.m_radius = 0.5*Math.hypot(env.getWidth(), env.getHeight());
+				index.queryCell(cell, (tri) -> {
+					for (int i = 0; i < 3; i++) {
+						t.m_minZ = Math.min(t.m_minZ, index.getZ(tri, i));
+						t.m_maxZ = Math.max(t.m_maxZ, index.getZ(tri, i));
+					}
+				});
+				tiles.add(t);
+			}
+		}
+		m_tiles = tiles.toArray(new Tile[tiles.size()]);
+	}
+
+	/**
+	 * Computes the horizon for a new viewpoint by reusing the tile horizons of previous viewpoints
+	 *
+	 * @param viewPoint viewpoint = center of cylinder
+	 * @return horizon
+	 */
+	public Horizon update(Coordinate viewPoint) {
+		ArrayList<Horizon> horizons = new ArrayList<>(m_tiles.length);
+
+		m_recomputed = 0;
+		for (Tile t: m_tiles) {
+			Horizon h = (t.m_anchor != null) ? reproject(t, viewPoint) : null;
+
+			if (h == null) {
+				// recompute tile horizon
+				ArrayList<MonotoneChain> chains = new ArrayList<>(m_index.getCellSize(t.m_cell));
+
+				m_index.queryCell(t.m_cell, (tri) -> 
+					Main.addUpperBoundary(chains, viewPoint, m_index.getCoordinate(tri, 0), m_index.getCoordinate(tri, 1), m_index.getCoordinate(tri, 2)));
+				Main.sortChains(chains);
+				h = Main.computeHorizon(chains);
+				if (m_quantum > 0) {
+					t.m_quantized = QuantizedChains.quantize(h, m_quantum);
+				} else {
+					t.m_horizon = h;
+				}
+				t.m_anchor = new Coordinate(viewPoint);
+				m_recomputed++;
+			}
+			if (!h.isEmpty()) horizons.add(h);
+		}
+		return (horizons.isEmpty()) ? new Horizon() : mergeRec(horizons, 0, horizons.size() - 1);
+	}
+
+	/**
+	 * Enables the reduced-precision mode: tile horizons are kept as quantized chains.
+	 * Reduces the memory of the kept tile horizons considerably, because the quantum is usually
+	 * small compared to the admissible error. Invalidates all kept tile horizons.
+	 * The quantized chains are storage only: they are unpacked into doubles before they are transformed and merged.
+	 *
+	 * @param quantum lattice spacing in projected units or 0 for full precision
+	 */
+	public void setQuantum(double quantum) {
+		m_quantum = quantum;
+		for (Tile t: m_tiles) {
+			t.m_horizon = null;
+			t.m_quantized = null;
+			t.m_anchor = null;
+		}
+	}
+
+	/**
+	 * Returns the number of tiles recomputed in the last update
+	 * @return number of recomputed tiles
+	 */
+	public int getRecomputedTiles() {
+		return m_recomputed;
+	}
+
+	/**
+	 * Returns the number of non-empty tiles
+	 * @return number of tiles
+	 */
+	public int getNumTiles() {
+		return m_tiles.length;
+	}
+
+	/**
+	 * Reprojects the tile horizon of the anchor viewpoint to the new viewpoint
+	 * by an affine transformation derived from the tile center.
+	 *
+	 * @param t tile
+	 * @param vp new viewpoint
+	 * @return reprojected horizon or null if the estimated error is too large
+	 */
+	private Horizon reproject(Tile t, Coordinate vp) {
+		final Coordinate a = t.m_anchor;
+		final double distA = Math.hypot(a.x - t.m_cx, a.y - t.m_cy);
+		final double distV = Math.hypot(vp.x - t.m_cx, vp.y - t.m_cy);
+		final double near = Math.min(distA, distV) - t.m_radius;	// lower bound of the distance to tile points
+
+		if (near <= 0) return null;
+
+		// first-order estimate of the deviation between the affine and the exact projection
+		final double move = Math.hypot(vp.x - a.x, vp.y - a.y) + Math.abs(vp.z - a.z);
+		final double dz = Math.max(Math.abs(t.m_maxZ - vp.z), Math.abs(t.m_minZ - vp.z));
+		final double error = Math.max(Main.X_SCALE, Main.Y_SCALE)*move*t.m_radius/(near*near)*(1 + dz/near);
+
+		if (error > m_maxError) return null;
+
+		// azimuth shift of the tile center
+		double dx = Math.atan2(vp.y - t.m_cy, vp.x - t.m_cx) - Math.atan2(a.y - t.m_cy, a.x - t.m_cx);
+		if (dx > Math.PI) dx -= 2*Math.PI;
+		else if (dx < -Math.PI) dx += 2*Math.PI;
+		dx *= Main.X_SCALE;
+
+		// elevation: y' = Y_SCALE*(z - vp.z)/distV = y*distA/distV - Y_SCALE*(vp.z - a.z)/distV
+		// a quantized tile horizon is unpacked into doubles: transform and merge do not use the lattice
+		Horizon h = ((m_quantum > 0) ? t.m_quantized.toHorizon() : t.m_horizon).transform(dx, distA/distV, -Main.Y_SCALE*(vp.z - a.z)/distV);
+
+		// tile horizons crossing the seam at azimuth +-pi have to be recomputed
+		if (!h.isEmpty()) {
+			final double max = Math.PI*Main.X_SCALE;
+			List<MonotoneChain> chains = h.getChains();
+
+			if (chains.get(0).getMinX() < -max || chains.get(chains.size() - 1).getMaxX() > max) return null;
+		}
+		return h;
+	}
+
+	private static Horizon mergeRec(ArrayList<Horizon> horizons, int low, int high) {
+		if (low == high) return horizons.get(low);
+
+		int middle = (low + high) / 2;
+		return mergeRec(horizons, low, middle).merge(mergeRec(horizons, middle + 1, high));
+	}
+}
@@ -0,0 +1,42 @@
+package tsm_alg.ex02;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Growable list of primitive ints, e.g. triangle numbers collected by a query visitor
+ */
+class IntList implements IntConsumer {
+	private int[] m_values;		// values [0, m_size) are valid
+	private int m_size;
+	
+	/**
+	 * Creates new empty list
+	 * @param capacity initial capacity
+	 */
+	IntList(int capacity) {
+		m_values = new int[Math.max(1, capacity)];
+	}
+	
+	/**
+	 * Appends a value in amortized O(1) time
+	 * @param value
+	 */
+	@Override
+	public void accept(int value) {
+		if (m_size == m_values.length) m_values = Arrays.copyOf(m_values, 2*m_size);
+		m_values[m_size++] = value;
+	}
+	
+	public int size() {
+		return m_size;
+	}
+	
+	/**
+	 * Returns the backing array: only the first size() values are valid
+	 * @return backing array
+	 */
+	public int[] array() {
+		return m_values;
+	}
+}
@@ -1,56 +1,74 @@
 package tsm_alg.ex02;
 
-import com.vividsolutions.jts.algorithm.CGAlgorithms;
 import com.vividsolutions.jts.geom.*;
 import com.vividsolutions.jts.math.Vector3D;
-import com.vividsolutions.jts.triangulate.DelaunayTriangulationBuilder;
+import tsm_alg.helpers.Predicates;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 public class Main {
+	public static final double X_SCALE = 1000;		// arbitrary scaling factor
+	public static final double Y_SCALE = 10000;		// arbitrary scaling factor: in reality: X_SCALE = Y_SCALE
+	public static final double SEAM_X = Math.PI*X_SCALE;	// x-coordinate of the seam at azimuth +-pi
+	
+	private static final int RADIX_BITS = 11;				// digit size of radix sort
+	
 	public static void main(String[] args) throws IOException {
 		final Coordinate viewPoint = new Coordinate(683200, 246700, 406 + 1.8); // Bürkliplatz
-		
-		GeometryFactory factory = new GeometryFactory();
+		final double tolerance = 5.0;	// vertical tolerance of horizon simplification in projected units
+		final double radius = 20000;	// visible radius in terrain units
+		final double overlap = 250;		// overlap of triangulation strips in terrain units
+		final boolean wrapAround = false;	// true: full 360 degree panorama
+		final boolean viewshed = false;		// true: visible grid points instead of horizon
 		
 		// read terrain x:[677000..687000], y:[242000..257000]
 		String path = Main.class.getResource("/tsm_alg/ex02/").getPath();
 		IO.setPath(path);
-		List<Coordinate> terrainPts = IO.readTerrain("Zurich25m.csv");
+		double[][] xyz = IO.readTerrainArrays("Zurich25m.csv");
+		GridTerrain grid = GridTerrain.create(xyz[0], xyz[1], xyz[2], xyz[0].length);
+		Horizon horizon;
 		
-		// build triangulation
-		DelaunayTriangulationBuilder terrainBuilder = new DelaunayTriangulationBuilder();
-		
-		terrainBuilder.setSites(terrainPts);
-		Geometry triangles = terrainBuilder.getTriangles(factory);
-		
-		// filter front facing triangles
-		ArrayList<MonotoneChain> chains = new ArrayList<>(triangles.getNumGeometries()/2);
-		// type cast is necessary because of ambiguities in overloaded method apply
-		triangles.apply((GeometryFilter)((g) -> {
-			if (g instanceof Polygon) {
-				Polygon poly = (Polygon)g;
-				LineString boundary = poly.getExteriorRing();
-				Coordinate p0 = boundary.getCoordinateN(0);
-				Coordinate p1 = boundary.getCoordinateN(1);
-				Coordinate p2 = boundary.getCoordinateN(2);
-
-				// compute normal of triangle
-				Vector3D v12 = new Vector3D(p1.x - p0.x, p1.y - p0.y, p1.z - p0.z);
-				Vector3D v13 = new Vector3D(p2.x - p0.x, p2.y - p0.y, p2.z - p0.z);
-				Vector3D v = new Vector3D(p0.x - viewPoint.x, p0.y - viewPoint.y, p0.z - viewPoint.z).normalize();
-				Vector3D norm = norm(v12, v13);
-
-				// test for front- or back-facing triangle
-				if (v.dot(norm) < 0) { // cos of angle between vectors is negative
-					// front-facing triangle
-					MonotoneChain mc = computeUpperBoundary(viewPoint, p0, p1, p2);
-					if (mc != null) chains.add(mc);
-				}
+		if (viewshed && grid != null) {
+			// visible grid points as multi point
+			BitSet visible = Viewshed.compute(grid, viewPoint, radius);
+			Coordinate[] points = new Coordinate[visible.cardinality()];
+			int n = 0;
+			
+			for (int k = visible.nextSetBit(0); k >= 0; k = visible.nextSetBit(k + 1)) {
+				final int i = k%grid.getNx(), j = k/grid.getNx();
+				points[n++] = new Coordinate(grid.getX(i), grid.getY(j), grid.getHeight(i, j));
 			}
-		}));
+			IO.writeXML("viewshed.xml", new GeometryFactory().createMultiPoint(points), null);
+			return;
+		}
+		if (grid != null) {
+			// regular grid: upper boundaries of front facing triangles within visible radius are generated directly from grid cells
+			ArrayList<MonotoneChain> chains = grid.computeChains(viewPoint, radius, wrapAround);
+			
+			// row-major cell order is not azimuth order: sort chains by minimal x
+			sortChains(chains);
+			
+			// compute horizon 
+			horizon = computeHorizon(chains, Runtime.getRuntime().availableProcessors());
+		} else {
+			// triangulation in parallel strips, culling and projection, and merging run as overlapped pipeline stages
+			HorizonPipeline pipeline = new HorizonPipeline(viewPoint, radius, overlap, wrapAround, Runtime.getRuntime().availableProcessors());
+			
+			try {
+				// the points parsed by the grid detection are reused
+				horizon = pipeline.run(xyz[0], xyz[1], xyz[2], xyz[0].length);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
 		
 		// simple test
 		/*
@@ -68,17 +86,246 @@ public class Main {
 		chains.add(new MonotoneChain(c4,c5,c6));
 		chains.add(new MonotoneChain(c7,c8,c9));
 		*/
-		
-		// compute horizon 
-		Horizon horizon = computeHorizon(chains);
-		Geometry geom = horizon.toLineString();
-		//System.out.println(geom);
 
 		// simplify the resulting horizon
-		//geom = DouglasPeuckerSimplifier.simplify(geom, 5.0);
+		horizon = horizon.simplify(tolerance);
 
 		// produce output
-		IO.writeXML("horizon.xml", geom, null);
+		IO.writeXML("horizon.xml", horizon);
+	}
+	
+	/**
+	 * Computes the upper boundaries of all front facing triangles of a triangulation
+	 * 
+	 * @param triangles triangulation
+	 * @param viewPoint viewpoint = center of cylinder
+	 * @return upper boundaries of projected front facing triangles
+	 */
+	public static ArrayList<MonotoneChain> computeChains(Geometry triangles, Coordinate viewPoint) {
+		// each triangle has at most one upper boundary
+		ArrayList<MonotoneChain> chains = new ArrayList<>(triangles.getNumGeometries());
+		
+		// type cast is necessary because of ambiguities in overloaded method apply
+		triangles.apply((GeometryFilter)((g) -> {
+			if (g instanceof Polygon) {
+				Polygon poly = (Polygon)g;
+				LineString boundary = poly.getExteriorRing();
+				
+				addUpperBoundary(chains, viewPoint, boundary.getCoordinateN(0), boundary.getCoordinateN(1), boundary.getCoordinateN(2));
+			}
+		}));
+		return chains;
+	}
+	
+	/**
+	 * Computes the upper boundaries of all front facing triangles within a visible radius
+	 * 
+	 * @param index spatial index of the triangulation
+	 * @param viewPoint viewpoint = center of cylinder
+	 * @param radius visible radius in terrain units
+	 * @return upper boundaries of projected front facing triangles
+	 */
+	public static ArrayList<MonotoneChain> computeChains(TriangleIndex index, Coordinate viewPoint, double radius) {
+		return computeChains(index, viewPoint, radius, false);
+	}
+	
+	/**
+	 * Computes the upper boundaries of all front facing triangles within a visible radius
+	 * 
+	 * @param index spatial index of the triangulation
+	 * @param viewPoint viewpoint = center of cylinder
+	 * @param radius visible radius in terrain units
+	 * @param wrapAround true: full 360 degree panorama including the triangles crossing the seam
+	 * @return upper boundaries of projected front facing triangles
+	 */
+	public static ArrayList<MonotoneChain> computeChains(TriangleIndex index, Coordinate viewPoint, double radius, boolean wrapAround) {
+		IntList triangles = new IntList(ProjectionKernel.BATCH_SIZE);
+		
+		// collect triangle numbers, then cull and project them in batches
+		index.queryRadius(viewPoint.x, viewPoint.y, radius, triangles);
+		
+		// each triangle has at most one upper boundary (except for a few triangles at the seam in wraparound mode)
+		ArrayList<MonotoneChain> chains = new ArrayList<>(triangles.size());
+		new ProjectionKernel(wrapAround).computeChains(viewPoint, index.getVertices(), triangles.array(), triangles.size(), chains);
+		return chains;
+	}
+	
+	/**
+	 * Computes the upper boundaries of all front facing triangles within a visible radius for several eye heights
+	 * at the same location. Culling, azimuths and distances are computed once for all eye heights.
+	 * 
+	 * @param index spatial index of the triangulation
+	 * @param x x-coordinate of the viewpoints
+	 * @param y y-coordinate of the viewpoints
+	 * @param eyeZ eye heights (z-coordinates of the viewpoints)
+	 * @param radius visible radius in terrain units
+	 * @param wrapAround true: full 360 degree panorama including the triangles crossing the seam
+	 * @return upper boundaries of projected front facing triangles: one list per eye height
+	 */
+	public static List<ArrayList<MonotoneChain>> computeChains(TriangleIndex index, double x, double y, double[] eyeZ, double radius, boolean wrapAround) {
+		IntList triangles = new IntList(ProjectionKernel.BATCH_SIZE);
+		
+		index.queryRadius(x, y, radius, triangles);
+		
+		ArrayList<ArrayList<MonotoneChain>> chains = new ArrayList<>(eyeZ.length);
+		for (int h = 0; h < eyeZ.length; h++) chains.add(new ArrayList<>(triangles.size()));
+		new ProjectionKernel(wrapAround).computeChains(x, y, eyeZ, index.getVertices(), triangles.array(), triangles.size(), chains);
+		return chains;
+	}
+	
+	/**
+	 * Adds the upper boundary of a triangle to the list of chains, if the triangle is front facing
+	 * 
+	 * @param chains list of monotone chains
+	 * @param viewPoint viewpoint = center of cylinder
+	 * @param p0 vertex of the triangle
+	 * @param p1 vertex of the triangle
+	 * @param p2 vertex of the triangle
+	 */
+	public static void addUpperBoundary(List<MonotoneChain> chains, Coordinate viewPoint, Coordinate p0, Coordinate p1, Coordinate p2) {
+		// compute normal of triangle: (p1 - p0) x (p2 - p0)
+		final double ax = p1.x - p0.x, ay = p1.y - p0.y, az = p1.z - p0.z;
+		final double bx = p2.x - p0.x, by = p2.y - p0.y, bz = p2.z - p0.z;
+
+		// test for front- or back-facing triangle
+		if (ProjectionKernel.isFrontFacing(p0.x - viewPoint.x, p0.y - viewPoint.y, p0.z - viewPoint.z, 
+				ay*bz - az*by, az*bx - ax*bz, ax*by - ay*bx)) { // cos of angle between vectors is negative
+			// front-facing triangle
+			MonotoneChain mc = computeUpperBoundary(viewPoint, p0, p1, p2);
+			if (mc != null) chains.add(mc);
+		}
+	}
+	
+	/**
+	 * Adds the upper boundary of a projected front facing triangle in wraparound mode.
+	 * The projected x-coordinates must lie in [-SEAM_X, SEAM_X].
+	 * A triangle crossing the seam is unwrapped behind the seam and its upper boundary is split at the seam.
+	 * The upper boundary of a triangle containing the viewpoint consists of all three edges.
+	 * 
+	 * @param chains list of monotone chains
+	 * @param p0 projected vertex of the triangle
+	 * @param p1 projected vertex of the triangle
+	 * @param p2 projected vertex of the triangle
+	 */
+	public static void addWrappedUpperBoundary(List<MonotoneChain> chains, Coordinate p0, Coordinate p1, Coordinate p2) {
+		Coordinate a = p0, b = p1, c = p2, t;
+		
+		// sort vertices by x
+		if (b.compareTo(a) < 0) { t = a; a = b; b = t; }
+		if (c.compareTo(b) < 0) { t = b; b = c; c = t; }
+		if (b.compareTo(a) < 0) { t = a; a = b; b = t; }
+		
+		// angular gaps between the vertices: the triangle lies in the complement of the largest gap
+		final double g1 = b.x - a.x, g2 = c.x - b.x, g3 = 2*SEAM_X - (c.x - a.x);
+		
+		if (g1 < SEAM_X && g2 < SEAM_X && g3 < SEAM_X) {
+			// triangle contains the viewpoint
+			if (a.x < b.x) addWrapped(chains, new MonotoneChain(a, b));
+			if (b.x < c.x) addWrapped(chains, new MonotoneChain(b, c));
+			addWrapped(chains, new MonotoneChain(c, unwrap(a)));
+		} else if (g3 >= g1 && g3 >= g2) {
+			// triangle does not cross the seam
+			MonotoneChain mc = computeUpperBoundary(a, b, c);
+			if (mc != null) chains.add(mc);
+		} else if (g1 >= g2) {
+			addWrapped(chains, computeUpperBoundary(b, c, unwrap(a)));
+		} else {
+			addWrapped(chains, computeUpperBoundary(c, unwrap(a), unwrap(b)));
+		}
+	}
+	
+	/**
+	 * Adds a chain in [-SEAM_X, 3*SEAM_X]: the part behind the seam is shifted by one full turn
+	 */
+	private static void addWrapped(List<MonotoneChain> chains, MonotoneChain mc) {
+		if (mc == null) return;
+		if (mc.getMaxX() <= SEAM_X) {
+			chains.add(mc);
+		} else {
+			MonotoneChain left = mc.clip(mc.getMinX(), SEAM_X);
+			MonotoneChain right = mc.clip(SEAM_X, mc.getMaxX());
+			
+			if (left != null) chains.add(left);
+			if (right != null) {
+				right = right.transform(-2*SEAM_X, 1, 0);
+				if (right != null) chains.add(right);
+			}
+		}
+	}
+	
+	/**
+	 * @return projected point moved behind the seam by one full turn
+	 */
+	private static Coordinate unwrap(Coordinate p) {
+		return new Coordinate(p.x + 2*SEAM_X, p.y);
+	}
+	
+	/**
+	 * Sorts chains by their minimal x-coordinate (azimuth) in O(n) time using an LSD radix sort
+	 * on the order preserving bit pattern of the x-coordinate.
+	 * Sibling subtrees of the divide-and-conquer recursion then cover adjacent x-ranges,
+	 * hence most chains are spliced instead of swept in the merges.
+	 * 
+	 * @param chains upper boundaries of projected triangles
+	 */
+	public static void sortChains(ArrayList<MonotoneChain> chains) {
+		final int n = chains.size();
+		if (n < 2) return;
+		
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			final long bits = Double.doubleToLongBits(chains.get(i).getMinX());
+			keys[i] = (bits < 0) ? ~bits : bits ^ Long.MIN_VALUE;
+		}
+		final int[] perm = radixOrder(keys);
+		
+		MonotoneChain[] sorted = new MonotoneChain[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = chains.get(perm[i]);
+		}
+		for (int i = 0; i < n; i++) {
+			chains.set(i, sorted[i]);
+		}
+	}
+	
+	/**
+	 * Stable LSD radix sort of unsigned 64 bit keys in O(n) time
+	 * 
+	 * @param keys unsigned keys (are overwritten)
+	 * @return permutation: perm[i] is the original index of the i-th smallest key
+	 */
+	static int[] radixOrder(long[] keys) {
+		final int n = keys.length;
+		final int mask = (1 << RADIX_BITS) - 1;
+		final int[] count = new int[mask + 1];
+		long[] keys2 = new long[n];
+		int[] perm = new int[n], perm2 = new int[n];
+		
+		for (int i = 0; i < n; i++) perm[i] = i;
+		if (n < 2) return perm;
+		
+		for (int shift = 0; shift < 64; shift += RADIX_BITS) {
+			Arrays.fill(count, 0);
+			for (int i = 0; i < n; i++) {
+				count[(int)(keys[i] >>> shift) & mask]++;
+			}
+			// skip the pass if all keys have the same digit
+			if (count[(int)(keys[0] >>> shift) & mask] == n) continue;
+			
+			for (int d = 0, sum = 0; d <= mask; d++) {
+				final int c = count[d];
+				count[d] = sum;
+				sum += c;
+			}
+			for (int i = 0; i < n; i++) {
+				final int k = count[(int)(keys[i] >>> shift) & mask]++;
+				keys2[k] = keys[i];
+				perm2[k] = perm[i];
+			}
+			long[] tk = keys; keys = keys2; keys2 = tk;
+			int[] tp = perm; perm = perm2; perm2 = tp;
+		}
+		return perm;
 	}
 	
 	/**
@@ -91,10 +338,109 @@ public class Main {
 	public static Horizon computeHorizon(ArrayList<MonotoneChain> chains) {
 		// TODO: compute horizon done
 
+		if (chains.isEmpty()) return new Horizon();
 		return computeHorizonRec(chains, 0, chains.size()-1);
 
 	}
 
+	/**
+	 * Computes horizon of a set of x-monotone chains in parallel.
+	 * The divide-and-conquer recursion runs as fork/join tasks; large merges use concurrent sweeps in x-slabs.
+	 * 
+	 * @param chains upper boundaries of projected triangles
+	 * @param parallelism number of worker threads
+	 * @return computed horizon
+	 */
+	public static Horizon computeHorizon(ArrayList<MonotoneChain> chains, int parallelism) {
+		if (chains.isEmpty()) return new Horizon();
+		if (parallelism <= 1) return computeHorizon(chains);
+		
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return computeHorizon(chains, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Computes horizon of a set of x-monotone chains in parallel in a given fork/join pool
+	 * 
+	 * @param chains upper boundaries of projected triangles
+	 * @param pool fork/join pool
+	 * @return computed horizon
+	 */
+	public static Horizon computeHorizon(ArrayList<MonotoneChain> chains, ForkJoinPool pool) {
+		return pool.invoke(new HorizonTask(chains, pool.getParallelism()));
+	}
+	
+	/**
+	 * Computes the horizons of several lists of chains, e.g. of several eye heights, in one fork/join pool
+	 * 
+	 * @param chains upper boundaries of projected triangles: one list per horizon
+	 * @param parallelism number of worker threads
+	 * @return computed horizons in the order of the lists
+	 */
+	public static Horizon[] computeHorizons(List<ArrayList<MonotoneChain>> chains, int parallelism) {
+		final List<HorizonTask> tasks = new ArrayList<>(chains.size());
+		for (ArrayList<MonotoneChain> c: chains) tasks.add(new HorizonTask(c, parallelism));
+		
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(ForkJoinTask.adapt(() -> { ForkJoinTask.invokeAll(tasks); }));
+		} finally {
+			pool.shutdown();
+		}
+		
+		final Horizon[] horizons = new Horizon[tasks.size()];
+		for (int h = 0; h < horizons.length; h++) horizons[h] = tasks.get(h).join();
+		return horizons;
+	}
+	
+	/**
+	 * Fork/join task of the parallel divide-and-conquer recursion.
+	 * Tasks running in a fork/join pool fork or invoke it directly instead of calling pool.invoke.
+	 */
+	static class HorizonTask extends RecursiveTask<Horizon> {
+		private static final long serialVersionUID = 1L;
+		private static final int SEQUENTIAL_SIZE = 1024;	// number of chains merged sequentially
+		
+		private final ArrayList<MonotoneChain> m_chains;
+		private final int m_low, m_high;
+		private final int m_parallelism;
+		
+		/**
+		 * Creates new task computing the horizon of all chains
+		 * 
+		 * @param chains upper boundaries of projected triangles
+		 * @param parallelism maximal number of slabs of large merges
+		 */
+		HorizonTask(ArrayList<MonotoneChain> chains, int parallelism) {
+			this(chains, 0, chains.size() - 1, parallelism);
+		}
+		
+		private HorizonTask(ArrayList<MonotoneChain> chains, int low, int high, int parallelism) {
+			m_chains = chains;
+			m_low = low;
+			m_high = high;
+			m_parallelism = parallelism;
+		}
+		
+		@Override
+		protected Horizon compute() {
+			if (m_high < m_low) return new Horizon();
+			if (m_high - m_low < SEQUENTIAL_SIZE) return computeHorizonRec(m_chains, m_low, m_high);
+			
+			int middle = (m_low + m_high) / 2;
+			HorizonTask left = new HorizonTask(m_chains, m_low, middle, m_parallelism);
+			HorizonTask right = new HorizonTask(m_chains, middle + 1, m_high, m_parallelism);
+			
+			left.fork();
+			Horizon r = right.compute();
+			return left.join().merge(r, m_parallelism);
+		}
+	}
+	
 	private static Horizon computeHorizonRec(ArrayList<MonotoneChain> chains, int low, int high) {
 		// TODO: compute horizon done
 
@@ -122,44 +468,57 @@ public class Main {
 	 * @return monotone chain or null if no monotone chain is possible
 	 */
 	public static MonotoneChain computeUpperBoundary(Coordinate viewPoint, Coordinate p0, Coordinate p1, Coordinate p2) {
-		Coordinate minX, midX, maxX;
-		
 		p0 = cylindricalProjection(viewPoint, p0);
 		if (p0 != null) {
-			minX = maxX = p0;
 			p1 = cylindricalProjection(viewPoint, p1);
 			if (p1 != null) {
-				if (p1.compareTo(minX) < 0) minX = p1;
-				if (p1.compareTo(maxX) > 0) maxX = p1;
 				p2 = cylindricalProjection(viewPoint, p2);
 				if (p2 != null) {
-					if (p2.compareTo(minX) < 0) minX = p2;
-					if (p2.compareTo(maxX) > 0) maxX = p2;
-					if (p0 != minX && p0 != maxX) midX = p0;
-					else if (p1 != minX && p1 != maxX) midX = p1;
-					else midX = p2;
-					
-					// compute upper boundary
-					int orient = CGAlgorithms.orientationIndex(minX, maxX, midX);
-					if (orient == 1) {
-						// midX is to the left of (minX, maxX)
-						if (minX.x == midX.x) {
-							// handles 90� angles correctly
-							return new MonotoneChain(midX, maxX);
-						} else {
-							return new MonotoneChain(minX, midX, maxX);
-						}
-					} else if (orient == -1 && minX.x < maxX.x) {
-						// midX is to the right of (minX, maxX)
-						// handles also 90� angles correctly
-						return new MonotoneChain(minX, maxX);
-					}
+					return computeUpperBoundary(p0, p1, p2);
 				}
 			}
 		}
 		return null;
 	}
 	
+	/**
+	 * Computes the upper boundary of an already projected triangle.
+	 * 
+	 * @param p0 projected vertex of the triangle
+	 * @param p1 projected vertex of the triangle
+	 * @param p2 projected vertex of the triangle
+	 * @return monotone chain or null if no monotone chain is possible
+	 */
+	public static MonotoneChain computeUpperBoundary(Coordinate p0, Coordinate p1, Coordinate p2) {
+		Coordinate minX, midX, maxX;
+		
+		minX = maxX = p0;
+		if (p1.compareTo(minX) < 0) minX = p1;
+		if (p1.compareTo(maxX) > 0) maxX = p1;
+		if (p2.compareTo(minX) < 0) minX = p2;
+		if (p2.compareTo(maxX) > 0) maxX = p2;
+		if (p0 != minX && p0 != maxX) midX = p0;
+		else if (p1 != minX && p1 != maxX) midX = p1;
+		else midX = p2;
+		
+		// compute upper boundary
+		int orient = Predicates.orientationIndex(minX, maxX, midX);
+		if (orient == 1) {
+			// midX is to the left of (minX, maxX)
+			if (minX.x == midX.x) {
+				// handles 90� angles correctly
+				return new MonotoneChain(midX, maxX);
+			} else {
+				return new MonotoneChain(minX, midX, maxX);
+			}
+		} else if (orient == -1 && minX.x < maxX.x) {
+			// midX is to the right of (minX, maxX)
+			// handles also 90� angles correctly
+			return new MonotoneChain(minX, maxX);
+		}
+		return null;
+	}
+	
 	/**
 	 * Compute normal vectors of plane span by two vectors.
 	 * 
@@ -201,20 +560,32 @@ public class Main {
 	 * @return projected point
 	 */
 	public static Coordinate cylindricalProjection(Coordinate vp, Coordinate p) {
-		final double xScale = 1000;		// arbitrary scaling factor
-		final double yScale = 10000;	// arbitrary scaling factor: in reality: xScale = yScale
-		final double max = Math.PI*xScale - 1.0e-10;
+		return cylindricalProjection(vp, p.x, p.y, p.z);
+	}
+	
+	/**
+	 * Compute cylindrical projection of point (x, y, z)
+	 * 
+	 * @param vp view point =  center of cylinder
+	 * @param x x-coordinate of the point to be projected
+	 * @param y y-coordinate of the point to be projected
+	 * @param z z-coordinate of the point to be projected
+	 * @return projected point or null if the point cannot be projected
+	 */
+	public static Coordinate cylindricalProjection(Coordinate vp, double x, double y, double z) {
+		final double max = Math.PI*X_SCALE - 1.0e-10;
 		
-		double dist = vp.distance(p);
+		final double dx = vp.x - x, dy = vp.y - y;
+		double dist = Math.sqrt(dx*dx + dy*dy);
 		if (dist == 0) return null;
 		
-		double x = Math.atan2(vp.y - p.y, vp.x - p.x)*xScale;
+		double px = Math.atan2(dy, dx)*X_SCALE;
 		
-		if (x < -max || x > max) {
+		if (px < -max || px > max) {
 			return null;
 		} else {
-			double y = yScale*(p.z - vp.z)/dist;
-			return new Coordinate(x, y);
+			double py = Y_SCALE*(z - vp.z)/dist;
+			return new Coordinate(px, py);
 		}
 	}
 }
@@ -1,9 +1,9 @@
 package tsm_alg.ex02;
 
-import com.vividsolutions.jts.algorithm.RobustLineIntersector;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
+import tsm_alg.helpers.Predicates;
 
 import java.util.List;
 
@@ -13,8 +13,6 @@ import java.util.List;
  *
  */
 public class MonotoneChain implements Comparable<MonotoneChain> {
-	public static RobustLineIntersector s_rli = new RobustLineIntersector();
-
 	private Coordinate[] m_coords;						// coordinates in increasing x-order
 	
 	private MonotoneChain(int size) {
@@ -147,21 +145,161 @@ public class MonotoneChain implements Comparable<MonotoneChain> {
 		return m_coords[m_coords.length - 1];
 	}
 
+	/**
+	 * Simplifies this chain in O(n) time such that the vertical distance between 
+	 * the original and the simplified chain is at most tolerance.
+	 * Uses a sliding window of feasible slopes: starting at an anchor point the window
+	 * is narrowed by the tolerance band of each following point. As soon as the slope 
+	 * towards the next point leaves the window, the previous point becomes the new anchor.
+	 * The end points of the chain are always kept.
+	 * 
+	 * @param tolerance maximum vertical error in projected units
+	 * @return simplified chain or this if no point can be removed
+	 */
+	public MonotoneChain simplify(double tolerance) {
+		final int n = m_coords.length;
+		if (n <= 2) return this;
+		
+		int[] keep = new int[n];
+		int cnt = 0;
+		double ax = m_coords[0].x, ay = m_coords[0].y;
+		double lo = Double.NEGATIVE_INFINITY, hi = Double.POSITIVE_INFINITY;
+		
+		keep[cnt++] = 0;
+		for (int i = 1; i < n; i++) {
+			final double x = m_coords[i].x, y = m_coords[i].y;
+			double dx = x - ax;
+			double slope = (y - ay)/dx;
+			
+			if (slope < lo || slope > hi) {
+				// previous point becomes new anchor
+				keep[cnt++] = i - 1;
+				ax = m_coords[i - 1].x; ay = m_coords[i - 1].y;
+				lo = Double.NEGATIVE_INFINITY; hi = Double.POSITIVE_INFINITY;
+				dx = x - ax;
+			}
+			// narrow window of feasible slopes
+			lo = Math.max(lo, (y - tolerance - ay)/dx);
+			hi = Math.min(hi, (y + tolerance - ay)/dx);
+		}
+		keep[cnt++] = n - 1;
+		if (cnt == n) return this;
+		
+		MonotoneChain mc = new MonotoneChain(cnt);
+		for (int i = 0; i < cnt; i++) {
+			mc.add(i, m_coords[keep[i]]);
+		}
+		return mc;
+	}
+
+	/**
+	 * Creates a transformed copy of this chain: (x, y) -> (x + dx, a*y + b)
+	 * 
+	 * @param dx horizontal shift
+	 * @param a vertical scaling factor (must be positive)
+	 * @param b vertical shift
+	 * @return transformed chain or null if the transformed chain collapses to one point
+	 */
+	public MonotoneChain transform(double dx, double a, double b) {
+		assert a > 0 : "negative scaling factor";
+		Coordinate[] coords = new Coordinate[m_coords.length];
+		int cnt = 0;
+		
+		for (int i = 0; i < m_coords.length; i++) {
+			Coordinate c = new Coordinate(m_coords[i].x + dx, a*m_coords[i].y + b);
+			
+			// rounding may destroy strict x-monotonicity: keep end points
+			if (cnt == 0 || c.x > coords[cnt - 1].x) {
+				coords[cnt++] = c;
+			} else if (i == m_coords.length - 1) {
+				coords[cnt - 1] = c;
+			}
+		}
+		if (cnt < 2) return null;
+		
+		MonotoneChain mc = new MonotoneChain(cnt);
+		System.arraycopy(coords, 0, mc.m_coords, 0, cnt);
+		return mc;
+	}
+
+	/**
+	 * Clips this chain to the x-range [minX, maxX] in O(log n + k) time
+	 * 
+	 * @param minX left end of the x-range
+	 * @param maxX right end of the x-range
+	 * @return clipped chain, this if the chain lies within the x-range, or null if the clipped chain is a point or empty
+	 */
+	public MonotoneChain clip(double minX, double maxX) {
+		if (minX <= getMinX() && maxX >= getMaxX()) return this;
+		minX = Math.max(minX, getMinX());
+		maxX = Math.min(maxX, getMaxX());
+		if (minX >= maxX) return null;
+		
+		// segment i contains minX, segment j - 1 contains maxX
+		final int first = lowerBound(minX);
+		final int i = (m_coords[first].x == minX) ? first : first - 1;
+		final int j = lowerBound(maxX);
+		MonotoneChain mc = new MonotoneChain(j - i + 1);
+		
+		mc.add(0, (m_coords[i].x == minX) ? m_coords[i] : splitSegment(i, minX));
+		for (int k = i + 1; k < j; k++) {
+			mc.add(k - i, m_coords[k]);
+		}
+		mc.add(j - i, (m_coords[j].x == maxX) ? m_coords[j] : splitSegment(j - 1, maxX));
+		return mc;
+	}
+	
+	/**
+	 * Joins this chain with its right sibling
+	 * 
+	 * @param mc right sibling
+	 * @return new chain
+	 */
+	public MonotoneChain join(MonotoneChain mc) {
+		assert isLeftSiblingOf(mc) : "chains are not siblings";
+		MonotoneChain joined = new MonotoneChain(m_coords.length + mc.m_coords.length - 1);
+		
+		System.arraycopy(m_coords, 0, joined.m_coords, 0, m_coords.length);
+		System.arraycopy(mc.m_coords, 1, joined.m_coords, m_coords.length, mc.m_coords.length - 1);
+		return joined;
+	}
+	
+	/**
+	 * Returns the y-coordinate of this chain at x in O(log n) time
+	 * 
+	 * @param x x-coordinate in [getMinX(), getMaxX()]
+	 * @return y-coordinate at x
+	 */
+	public double getY(double x) {
+		assert getMinX() <= x && x <= getMaxX() : "x out of range: " + x;
+		final int i = lowerBound(x);
+		
+		return (m_coords[i].x == x) ? m_coords[i].y : splitSegment(i - 1, x).y;
+	}
+	
+	/**
+	 * Binary search
+	 * @return index of the first vertex with x-coordinate greater than or equal to x
+	 */
+	private int lowerBound(double x) {
+		int lo = 0, hi = m_coords.length;
+		
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (m_coords[mid].x < x) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
 	/**
 	 * Splits a line segment vertically at x and computes an intersection point
 	 * 
 	 * @param startIndex start index of the segment being splitted
-	 * @param x
+	 * @param x x-coordinate within the segment
 	 */
 	public Coordinate splitSegment(int startIndex, double x) {
-		final double offset = 10; // arbitrary value > 0
-		
-		Coordinate p1 = m_coords[startIndex], p2 = m_coords[startIndex + 1];
-		double yMin = Math.min(p1.y, p2.y) - offset;
-		double yMax = Math.max(p1.y, p2.y) + offset;
-		s_rli.computeIntersection(p1, p2, new Coordinate(x, yMin), new Coordinate(x, yMax));
-		
-		return (s_rli.hasIntersection()) ? s_rli.getIntersection(0) : null;
+		return Predicates.pointAtX(m_coords[startIndex], m_coords[startIndex + 1], x);
 	}
 	
 }
@@ -0,0 +1,136 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.triangulate.DelaunayTriangulationBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel triangulation of terrain points by spatial partitioning.
+ * <p>
+ * The points are split into vertical strips with equal numbers of points. Each strip is enlarged
+ * by an overlap on both sides and triangulated concurrently. A triangle is kept by the strip
+ * containing its centroid, hence the strip triangulations are stitched without duplicates.
+ * Triangles whose circumcircle lies inside the enlarged strip are identical to the triangles of the
+ * global Delaunay triangulation; with a sufficient overlap (a few point spacings) only a few triangles
+ * along the strip boundaries differ, which is irrelevant for horizon computation.
+ */
+public class ParallelTriangulator {
+
+	/**
+	 * Triangulates the points in parallel
+	 *
+	 * @param pts terrain points
+	 * @param factory geometry factory
+	 * @param strips number of strips (usually the number of available processors)
+	 * @param overlap width of the overlap at each side of a strip in terrain units
+	 * @return geometry collection of triangles
+	 */
+	public static Geometry triangulate(List<Coordinate> pts, GeometryFactory factory, int strips, double overlap) {
+		if (strips <= 1 || pts.size() < 2*strips) {
+			DelaunayTriangulationBuilder builder = new DelaunayTriangulationBuilder();
+			builder.setSites(pts);
+			return builder.getTriangles(factory);
+		}
+
+		// sort points in x-order
+		final Coordinate[] sorted = sortByX(pts);
+		final double[] bounds = stripBounds(sorted, strips);
+
+		// triangulate strips concurrently
+		final List<List<Polygon>> parts = IntStream.range(0, strips).parallel()
+				.mapToObj((i) -> triangulateStrip(sorted, bounds, i, overlap, factory))
+				.collect(Collectors.toList());
+
+		// stitch strips
+		int cnt = 0;
+		for (List<Polygon> part: parts) cnt += part.size();
+
+		Polygon[] triangles = new Polygon[cnt];
+		cnt = 0;
+		for (List<Polygon> part: parts) {
+			for (Polygon p: part) triangles[cnt++] = p;
+		}
+		return factory.createGeometryCollection(triangles);
+	}
+
+	/**
+	 * @return points in x-order
+	 */
+	static Coordinate[] sortByX(List<Coordinate> pts) {
+		final Coordinate[] sorted = pts.toArray(new Coordinate[pts.size()]);
+
+		Arrays.sort(sorted, Comparator.comparingDouble((Coordinate c) -> c.x));
+		return sorted;
+	}
+
+	/**
+	 * Computes strip boundaries with equal numbers of points per strip
+	 *
+	 * @param sorted points in x-order
+	 * @param strips number of strips
+	 * @return strip boundaries: -infinity, inner boundaries, +infinity
+	 */
+	static double[] stripBounds(Coordinate[] sorted, int strips) {
+		final double[] bounds = new double[strips + 1];
+
+		bounds[0] = Double.NEGATIVE_INFINITY;
+		bounds[strips] = Double.POSITIVE_INFINITY;
+		for (int i = 1; i < strips; i++) {
+			bounds[i] = sorted[(int)((long)i*sorted.length/strips)].x;
+		}
+		return bounds;
+	}
+
+	/**
+	 * Triangulates one strip enlarged by the overlap and keeps the triangles with centroid in the strip
+	 *
+	 * @param sorted points in x-order
+	 * @param bounds strip boundaries
+	 * @param i strip number
+	 * @param overlap width of the overlap at each side of a strip in terrain units
+	 * @param factory geometry factory
+	 * @return triangles of strip i
+	 */
+	static List<Polygon> triangulateStrip(Coordinate[] sorted, double[] bounds, int i, double overlap, GeometryFactory factory) {
+		final int from = lowerBound(sorted, bounds[i] - overlap);
+		final int to = lowerBound(sorted, bounds[i + 1] + overlap);
+		DelaunayTriangulationBuilder builder = new DelaunayTriangulationBuilder();
+		ArrayList<Polygon> triangles = new ArrayList<>();
+
+		builder.setSites(Arrays.asList(sorted).subList(from, to));
+		Geometry g = builder.getTriangles(factory);
+		for (int k = 0; k < g.getNumGeometries(); k++) {
+			Polygon p = (Polygon)g.getGeometryN(k);
+			Coordinate[] c = p.getExteriorRing().getCoordinates();
+			double cx = (c[0].x + c[1].x + c[2].x)/3;
+
+			// keep triangles with centroid in this strip
+			if (cx >= bounds[i] && cx < bounds[i + 1]) triangles.add(p);
+		}
+		return triangles;
+	}
+
+	/**
+	 * Binary search in x-sorted points
+	 * @return index of first point with x >= x
+	 */
+	private static int lowerBound(Coordinate[] sorted, double x) {
+		int lo = 0, hi = sorted.length;
+
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid].x < x) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+}
@@ -0,0 +1,289 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Batched back-face culling and cylindrical projection on primitive arrays.
+ * <p>
+ * The vertices are processed in structure-of-arrays buffers by short, branch-free loops without
+ * object allocation. The arc tangent is approximated by a polynomial with an absolute error below 2e-8 rad
+ * (Abramowitz and Stegun 4.4.49), that is below 2e-5 projected units.
+ * The scalar projection in Main.cylindricalProjection uses Math.atan2, hence both differ by at most this error.
+ * <p>
+ * An instance holds the buffers of one thread.
+ */
+public class ProjectionKernel {
+	public static final int BATCH_SIZE = 1024;				// number of triangles per batch
+
+	private static final double MAX_X = Math.PI*Main.X_SCALE - 1.0e-10;
+	// coefficients of atan(a)/a = 1 + A2*a^2 + ... + A16*a^16 in [0, 1]
+	private static final double A2 = -0.3333314528, A4 = 0.1999355085, A6 = -0.1420889944, A8 = 0.1065626393;
+	private static final double A10 = -0.0752896400, A12 = 0.0429096138, A14 = -0.0161657367, A16 = 0.0028662257;
+
+	private final int[] m_front = new int[BATCH_SIZE];		// front facing triangles of a batch
+	private final double[] m_x = new double[3*BATCH_SIZE];	// vertex buffers: 3 vertices per triangle
+	private final double[] m_y = new double[3*BATCH_SIZE];
+	private final double[] m_z = new double[3*BATCH_SIZE];
+	private final double[] m_px = new double[3*BATCH_SIZE];	// projected vertices
+	private final double[] m_py = new double[3*BATCH_SIZE];
+	private final double[] m_inv = new double[3*BATCH_SIZE];	// scaled inverse horizontal distances of projected vertices
+	private final double[] m_d = new double[BATCH_SIZE];		// front facing test of triangle k at eye height z: m_d[k] < z*m_nz[k]
+	private final double[] m_nz = new double[BATCH_SIZE];
+	private final boolean m_wrapAround;							// full 360 degree panorama
+
+	/**
+	 * Creates new kernel
+	 * @param wrapAround true: triangles crossing the seam at azimuth +-pi are split instead of dropped
+	 */
+	public ProjectionKernel(boolean wrapAround) {
+		m_wrapAround = wrapAround;
+	}
+
+	/**
+	 * Fast approximation of Math.atan2 with an absolute error below 2e-8
+	 *
+	 * @param y ordinate
+	 * @param x abscissa
+	 * @return angle in [-pi, pi]
+	 */
+	public static double atan2(double y, double x) {
+		final double ax = Math.abs(x), ay = Math.abs(y);
+		final double max = Math.max(ax, ay);
+		final double a = (max == 0) ? 0 : Math.min(ax, ay)/max;
+		final double s = a*a;
+		double r = a*(1 + s*(A2 + s*(A4 + s*(A6 + s*(A8 + s*(A10 + s*(A12 + s*(A14 + s*A16))))))));
+
+		r = (ay > ax) ? Math.PI/2 - r : r;
+		r = (x < 0) ? Math.PI - r : r;
+		return Math.copySign(r, y);
+	}
+
+	/**
+	 * Tests for front facing triangle: the view vector v from the viewpoint to a vertex and
+	 * the normal n of the triangle form an obtuse angle
+	 */
+	public static boolean isFrontFacing(double vx, double vy, double vz, double nx, double ny, double nz) {
+		return vx*nx + vy*ny + vz*nz < 0;
+	}
+
+	/**
+	 * Projects n vertices given in structure-of-arrays layout.
+	 * Vertices that cannot be projected get the y-coordinate NaN: the viewpoint itself and,
+	 * unless in wraparound mode, the vertices at the seam.
+	 *
+	 * @param vp viewpoint = center of cylinder
+	 * @param x x-coordinates
+	 * @param y y-coordinates
+	 * @param z z-coordinates
+	 * @param n number of vertices
+	 * @param px receives projected x-coordinates
+	 * @param py receives projected y-coordinates
+	 * @param wrapAround true: vertices at the seam are projected to x = +-SEAM_X
+	 */
+	public static void project(Coordinate vp, double[] x, double[] y, double[] z, int n, double[] px, double[] py, boolean wrapAround) {
+		final double vx = vp.x, vy = vp.y, vz = vp.z;
+
+		for (int i = 0; i < n; i++) {
+			final double dx = vx - x[i], dy = vy - y[i];
+			final double dist = Math.sqrt(dx*dx + dy*dy);
+			final double a = atan2(dy, dx)*Main.X_SCALE;
+
+			px[i] = a;
+			py[i] = (dist > 0 && (wrapAround || (a >= -MAX_X && a <= MAX_X))) ? Main.Y_SCALE*(z[i] - vz)/dist : Double.NaN;
+		}
+	}
+
+	/**
+	 * Computes the height independent part of the projection of n vertices seen from (vx, vy):
+	 * the projected x-coordinate (azimuth) and the scaled inverse horizontal distance Y_SCALE/dist.
+	 * The projected y-coordinate for an eye at height vz is then (z - vz)*inv, see elevate.
+	 * Vertices that cannot be projected get inv = NaN.
+	 *
+	 * @param vx x-coordinate of the viewpoint
+	 * @param vy y-coordinate of the viewpoint
+	 * @param x x-coordinates
+	 * @param y y-coordinates
+	 * @param n number of vertices
+	 * @param px receives projected x-coordinates
+	 * @param inv receives scaled inverse horizontal distances
+	 * @param wrapAround true: vertices at the seam are projected to x = +-SEAM_X
+	 */
+	public static void projectAzimuth(double vx, double vy, double[] x, double[] y, int n, double[] px, double[] inv, boolean wrapAround) {
+		for (int i = 0; i < n; i++) {
+			final double dx = vx - x[i], dy = vy - y[i];
+			final double dist = Math.sqrt(dx*dx + dy*dy);
+			final double a = atan2(dy, dx)*Main.X_SCALE;
+
+			px[i] = a;
+			inv[i] = (dist > 0 && (wrapAround || (a >= -MAX_X && a <= MAX_X))) ? Main.Y_SCALE/dist : Double.NaN;
+		}
+	}
+
+	/**
+	 * Computes the projected y-coordinates of n vertices for an eye at height vz
+	 *
+	 * @param z z-coordinates
+	 * @param inv scaled inverse horizontal distances computed by projectAzimuth
+	 * @param n number of vertices
+	 * @param vz eye height
+	 * @param py receives projected y-coordinates (NaN if the vertex cannot be projected)
+	 */
+	public static void elevate(double[] z, double[] inv, int n, double vz, double[] py) {
+		for (int i = 0; i < n; i++) {
+			py[i] = (z[i] - vz)*inv[i];
+		}
+	}
+
+	/**
+	 * Computes the upper boundaries of the front facing triangles of a packed vertex array
+	 * for several eye heights at the same location. Back-face culling, azimuths and distances
+	 * are computed once per triangle; only the projected y-coordinates are computed per eye height.
+	 *
+	 * @param vx x-coordinate of the viewpoints
+	 * @param vy y-coordinate of the viewpoints
+	 * @param eyeZ eye heights
+	 * @param vertices packed vertices: x, y, z of three vertices per triangle
+	 * @param triangles triangle numbers
+	 * @param n number of triangle numbers
+	 * @param chains receives the upper boundaries of the projected front facing triangles: one list per eye height
+	 */
+	public void computeChains(double vx, double vy, double[] eyeZ, double[] vertices, int[] triangles, int n, List<? extends List<MonotoneChain>> chains) {
+		if (eyeZ.length == 0) return;
+
+		final double minZ = Arrays.stream(eyeZ).min().getAsDouble();
+		final double maxZ = Arrays.stream(eyeZ).max().getAsDouble();
+
+		for (int from = 0; from < n; from += BATCH_SIZE) {
+			final int cnt = cull(vx, vy, minZ, maxZ, vertices, triangles, from, Math.min(n, from + BATCH_SIZE));
+
+			// gather vertices of triangles front facing for at least one eye height
+			for (int k = 0; k < cnt; k++) {
+				final int v = 9*m_front[k];
+				for (int i = 0; i < 3; i++) {
+					m_x[3*k + i] = vertices[v + 3*i];
+					m_y[3*k + i] = vertices[v + 3*i + 1];
+					m_z[3*k + i] = vertices[v + 3*i + 2];
+				}
+			}
+			projectAzimuth(vx, vy, m_x, m_y, 3*cnt, m_px, m_inv, m_wrapAround);
+
+			for (int h = 0; h < eyeZ.length; h++) {
+				final double vz = eyeZ[h];
+
+				elevate(m_z, m_inv, 3*cnt, vz, m_py);
+				for (int k = 0; k < cnt; k++) {
+					if (m_d[k] < vz*m_nz[k]) addChain(3*k, chains.get(h));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the upper boundaries of the front facing triangles of a packed vertex array
+	 *
+	 * @param vp viewpoint = center of cylinder
+	 * @param vertices packed vertices: x, y, z of three vertices per triangle
+	 * @param triangles triangle numbers
+	 * @param n number of triangle numbers
+	 * @param chains receives the upper boundaries of the projected front facing triangles
+	 */
+	public void computeChains(Coordinate vp, double[] vertices, int[] triangles, int n, List<MonotoneChain> chains) {
+		for (int from = 0; from < n; from += BATCH_SIZE) {
+			final int cnt = cull(vp, vertices, triangles, from, Math.min(n, from + BATCH_SIZE));
+
+			// gather vertices of front facing triangles
+			for (int k = 0; k < cnt; k++) {
+				final int v = 9*m_front[k];
+				for (int i = 0; i < 3; i++) {
+					m_x[3*k + i] = vertices[v + 3*i];
+					m_y[3*k + i] = vertices[v + 3*i + 1];
+					m_z[3*k + i] = vertices[v + 3*i + 2];
+				}
+			}
+			project(vp, m_x, m_y, m_z, 3*cnt, m_px, m_py, m_wrapAround);
+
+			for (int k = 0; k < 3*cnt; k += 3) {
+				addChain(k, chains);
+			}
+		}
+	}
+
+	/**
+	 * Adds the upper boundary of the projected triangle with the vertices k, k + 1, k + 2 in m_px, m_py
+	 */
+	private void addChain(int k, List<MonotoneChain> chains) {
+		if (!Double.isNaN(m_py[k]) && !Double.isNaN(m_py[k + 1]) && !Double.isNaN(m_py[k + 2])) {
+			final Coordinate p0 = new Coordinate(m_px[k], m_py[k]);
+			final Coordinate p1 = new Coordinate(m_px[k + 1], m_py[k + 1]);
+			final Coordinate p2 = new Coordinate(m_px[k + 2], m_py[k + 2]);
+
+			if (m_wrapAround) {
+				Main.addWrappedUpperBoundary(chains, p0, p1, p2);
+			} else {
+				MonotoneChain mc = Main.computeUpperBoundary(p0, p1, p2);
+				if (mc != null) chains.add(mc);
+			}
+		}
+	}
+
+	/**
+	 * Back-face culling of the triangles [from, to) of a batch
+	 *
+	 * @return number of front facing triangles in m_front
+	 */
+	private int cull(Coordinate vp, double[] vertices, int[] triangles, int from, int to) {
+		final double vx = vp.x, vy = vp.y, vz = vp.z;
+		int cnt = 0;
+
+		for (int k = from; k < to; k++) {
+			final int t = triangles[k];
+			final int v = 9*t;
+			final double x0 = vertices[v], y0 = vertices[v + 1], z0 = vertices[v + 2];
+			final double ax = vertices[v + 3] - x0, ay = vertices[v + 4] - y0, az = vertices[v + 5] - z0;
+			final double bx = vertices[v + 6] - x0, by = vertices[v + 7] - y0, bz = vertices[v + 8] - z0;
+
+			// normal = a x b
+			final double nx = ay*bz - az*by, ny = az*bx - ax*bz, nz = ax*by - ay*bx;
+
+			// branch-free compaction
+			m_front[cnt] = t;
+			cnt += isFrontFacing(x0 - vx, y0 - vy, z0 - vz, nx, ny, nz) ? 1 : 0;
+		}
+		return cnt;
+	}
+
+	/**
+	 * Back-face culling of the triangles [from, to) of a batch for eye heights in [minZ, maxZ].
+	 * The front facing test is linear in the eye height, hence a triangle is front facing for at least one
+	 * eye height if it is front facing for minZ or maxZ. The test terms are kept in m_d and m_nz.
+	 *
+	 * @return number of front facing triangles in m_front
+	 */
+	private int cull(double vx, double vy, double minZ, double maxZ, double[] vertices, int[] triangles, int from, int to) {
+		int cnt = 0;
+
+		for (int k = from; k < to; k++) {
+			final int t = triangles[k];
+			final int v = 9*t;
+			final double x0 = vertices[v], y0 = vertices[v + 1], z0 = vertices[v + 2];
+			final double ax = vertices[v + 3] - x0, ay = vertices[v + 4] - y0, az = vertices[v + 5] - z0;
+			final double bx = vertices[v + 6] - x0, by = vertices[v + 7] - y0, bz = vertices[v + 8] - z0;
+
+			// normal = a x b
+			final double nx = ay*bz - az*by, ny = az*bx - ax*bz, nz = ax*by - ay*bx;
+
+			// front facing at eye height z: (x0 - vx)*nx + (y0 - vy)*ny + (z0 - z)*nz < 0
+			final double d = (x0 - vx)*nx + (y0 - vy)*ny + z0*nz;
+
+			// branch-free compaction
+			m_front[cnt] = t;
+			m_d[cnt] = d;
+			m_nz[cnt] = nz;
+			cnt += (d < minZ*nz || d < maxZ*nz) ? 1 : 0;
+		}
+		return cnt;
+	}
+}
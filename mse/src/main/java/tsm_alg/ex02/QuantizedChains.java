@@ -0,0 +1,178 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable, reduced-precision storage of projected x-monotone chains or horizons.
+ * <p>
+ * The coordinates are snapped to an integer lattice with spacing quantum and packed into
+ * two int arrays; the unused z-coordinates are dropped. Compared to chains of Coordinate instances
+ * this needs about a sixth of the memory per vertex.
+ * Because all coordinates are integers with an absolute value below 2^30, orientation tests
+ * on quantized coordinates are evaluated exactly in long arithmetic. They are used while quantizing only, to remove
+ * vertices that become collinear by snapping. Vertices that lose strict x-monotonicity by snapping are removed as well.
+ * <p>
+ * The lattice is a storage format: toHorizon unpacks the chains into doubles, and they are transformed and merged
+ * in double precision. The robustness of the merge comes from the adaptive exact predicates on doubles used by the
+ * sweep (tsm_alg.helpers.Predicates), not from the lattice.
+ */
+public class QuantizedChains {
+	private static final double MAX_VALUE = 1 << 30;	// limit of quantized coordinates
+
+	private double m_quantum;		// lattice spacing
+	private int[] m_x, m_y;			// quantized coordinates of all chains
+	private int[] m_chainStart;		// start index of each chain in m_x, m_y (length: number of chains + 1)
+
+	private QuantizedChains() {}
+
+	/**
+	 * Quantizes all chains of a horizon
+	 *
+	 * @param h horizon
+	 * @param quantum lattice spacing in projected units
+	 * @return quantized horizon
+	 */
+	public static QuantizedChains quantize(Horizon h, double quantum) {
+		return quantize(h.getChains(), quantum);
+	}
+
+	/**
+	 * Quantizes a collection of x-monotone chains
+	 *
+	 * @param chains x-monotone chains
+	 * @param quantum lattice spacing in projected units
+	 * @return quantized chains
+	 */
+	public static QuantizedChains quantize(Collection<MonotoneChain> chains, double quantum) {
+		if (!(quantum > 0)) throw new IllegalArgumentException("quantum must be positive: " + quantum);
+
+		int size = 0;
+		for (MonotoneChain mc: chains) size += mc.size();
+
+		QuantizedChains qc = new QuantizedChains();
+		final int[] x = new int[size], y = new int[size];
+		final int[] chainStart = new int[chains.size() + 1];
+		int cnt = 0, nChains = 0;
+
+		qc.m_quantum = quantum;
+		for (MonotoneChain mc: chains) {
+			final Coordinate[] coords = mc.getCoords();
+			final int start = cnt;
+
+			for (int i = 0; i < coords.length; i++) {
+				final int qx = qc.quantize(coords[i].x);
+				final int qy = qc.quantize(coords[i].y);
+
+				if (cnt > start && qx <= x[cnt - 1]) {
+					// snapping destroyed strict x-monotonicity: keep end point
+					if (i == coords.length - 1) {
+						x[cnt - 1] = qx;
+						y[cnt - 1] = qy;
+					}
+					continue;
+				}
+				if (cnt - start >= 2 && orientationIndex(x[cnt - 2], y[cnt - 2], x[cnt - 1], y[cnt - 1], qx, qy) == 0) {
+					// remove collinear inner vertex
+					cnt--;
+				}
+				x[cnt] = qx;
+				y[cnt] = qy;
+				cnt++;
+			}
+			if (cnt - start < 2) {
+				// chain collapsed to a point
+				cnt = start;
+			} else {
+				chainStart[++nChains] = cnt;
+			}
+		}
+		qc.m_x = Arrays.copyOf(x, cnt);
+		qc.m_y = Arrays.copyOf(y, cnt);
+		qc.m_chainStart = Arrays.copyOf(chainStart, nChains + 1);
+		return qc;
+	}
+
+	/**
+	 * Exact orientation test of three lattice points (|coordinates| < 2^30)
+	 *
+	 * @return 1 if c is to the left of directed line a-b, -1 if c is to the right, 0 if collinear
+	 */
+	public static int orientationIndex(long ax, long ay, long bx, long by, long cx, long cy) {
+		return Long.signum((bx - ax)*(cy - ay) - (by - ay)*(cx - ax));
+	}
+
+	public double getQuantum() {
+		return m_quantum;
+	}
+
+	/**
+	 * Returns the number of chains
+	 * @return number of chains
+	 */
+	public int size() {
+		return m_chainStart.length - 1;
+	}
+
+	/**
+	 * Returns the number of vertices of all chains
+	 * @return number of vertices
+	 */
+	public int numCoordinates() {
+		return m_x.length;
+	}
+
+	/**
+	 * Unpacks one chain
+	 * @param i chain number
+	 * @return new x-monotone chain of lattice points
+	 */
+	public MonotoneChain getChain(int i) {
+		final int start = m_chainStart[i];
+		final int end = m_chainStart[i + 1];
+		ArrayList<Coordinate> coords = new ArrayList<>(end - start);
+
+		for (int k = start; k < end; k++) {
+			coords.add(new Coordinate(m_x[k]*m_quantum, m_y[k]*m_quantum));
+		}
+		return MonotoneChain.create(coords);
+	}
+
+	/**
+	 * Unpacks all chains
+	 * @return list of new x-monotone chains
+	 */
+	public ArrayList<MonotoneChain> toChains() {
+		ArrayList<MonotoneChain> chains = new ArrayList<>(size());
+
+		for (int i = 0; i < size(); i++) {
+			chains.add(getChain(i));
+		}
+		return chains;
+	}
+
+	/**
+	 * Unpacks all chains into a horizon. The chains must have been quantized from a horizon.
+	 * @return new horizon
+	 */
+	public Horizon toHorizon() {
+		Horizon h = new Horizon();
+		List<MonotoneChain> chains = toChains();
+
+		for (MonotoneChain mc: chains) {
+			h.add(mc);
+		}
+		return h;
+	}
+
+	private int quantize(double v) {
+		final double q = Math.rint(v/m_quantum);
+
+		if (Math.abs(q) >= MAX_VALUE) throw new IllegalArgumentException("coordinate out of range: " + v);
+		return (int)q;
+	}
+}
@@ -1,10 +1,10 @@
 package tsm_alg.ex02;
 
-import com.vividsolutions.jts.algorithm.CGAlgorithms;
 import com.vividsolutions.jts.geom.Coordinate;
+import tsm_alg.helpers.Predicates;
 
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 /**
  * Sweep line status
@@ -13,7 +13,7 @@ import java.util.LinkedList;
  */
 public class Status {
 	private Horizon m_horizon;					// resulting horizon
-	private LinkedList<Coordinate> m_result;	// resulting chain
+	private ArrayList<Coordinate> m_result;		// resulting chain: reused buffer
 	private MonotoneChain m_upper, m_lower; 	// two chains; if there is only one of them, then it is m_upper
 	private int m_upperIndex, m_lowerIndex;		// index of last handled point in chain
 	
@@ -22,9 +22,18 @@ public class Status {
 	 * @param h resulting horizon
 	 */
 	public Status(Horizon h) {
+		this(h, 16);
+	}
+	
+	/**
+	 * Create new status
+	 * @param h resulting horizon
+	 * @param capacity initial capacity of the buffer of resulting chains
+	 */
+	public Status(Horizon h, int capacity) {
 		assert h != null;
 		m_horizon = h;
-		m_result = new LinkedList<Coordinate>();
+		m_result = new ArrayList<Coordinate>(capacity);
 	}
 	
 	public boolean isEmpty() {
@@ -56,7 +65,7 @@ public class Status {
 			// second chain (mc) starts: compute new order
 			Coordinate u0 = m_upper.get(m_upperIndex);
 			Coordinate u1 = m_upper.get(m_upperIndex + 1);
-			int orient = CGAlgorithms.orientationIndex(u0, u1, p);
+			int orient = Predicates.orientationIndex(u0, u1, p);
 			
 			if (orient == 1) {
 				// mc starts above m_upper
@@ -66,7 +75,7 @@ public class Status {
 					assert p.x > u0.x && p.x < u1.x;
 					// split m_upper chain at p.x
 					Coordinate ip = m_upper.splitSegment(m_upperIndex, p.x);
-					assert MonotoneChain.s_rli.isInteriorIntersection(0);
+					assert ip.x == p.x;
 					add(ip);
 				}
 				swap();
@@ -78,7 +87,7 @@ public class Status {
 				// mc starts on m_upper: check next vertex
 				Coordinate p1 = mc.get(1);
 				
-				orient = CGAlgorithms.orientationIndex(u0, u1, p1);
+				orient = Predicates.orientationIndex(u0, u1, p1);
 				if (orient == 1) {
 					// mc is above m_upper
 					if (p.x == u0.x) {
@@ -103,50 +112,50 @@ public class Status {
 		}
 		
 		if (hasTwoSegments()) {
-			intersect();
+			intersect(p.x);
 		}
 	}
 	
-	private void intersect() {
+	/**
+	 * Checks whether lower crosses upper between the sweep position x and the next vertex of upper or lower.
+	 * Both segments are linear in this x-range and lower is not above upper at x, 
+	 * hence they cross if and only if lower is above upper at the end of the range.
+	 * Only exact orientation tests are used for this decision.
+	 * 
+	 * @param x sweep position
+	 */
+	private void intersect(double x) {
 		//System.out.println("intersect");
 		assert m_upper != null : "invalid status";
 		assert m_lower != null : "status contains one segement only";
 		
-		Coordinate u0 = m_upper.get(m_upperIndex);
-		Coordinate l0 = m_lower.get(m_lowerIndex);
-		
 		if (m_upper.size() > m_upperIndex + 1 && m_lower.size() > m_lowerIndex + 1) {
+			Coordinate u0 = m_upper.get(m_upperIndex);
 			Coordinate u1 = m_upper.get(m_upperIndex + 1);
+			Coordinate l0 = m_lower.get(m_lowerIndex);
 			Coordinate l1 = m_lower.get(m_lowerIndex + 1);
-		
-			// check for intersection
-			MonotoneChain.s_rli.computeIntersection(u0, u1, l0, l1);
 			
-			if (MonotoneChain.s_rli.isProper()) {
-				// handle intersection: inserting ip between l1 and l2
-				Coordinate ip = MonotoneChain.s_rli.getIntersection(0);
-				add(ip);
-				swap();
-			} else if (MonotoneChain.s_rli.isInteriorIntersection(0)) {
-				// intersection in one of the end points of lower
-				// handle this intersection point
-				add(l0);
-				
-				// check orientation of u2
-				if (CGAlgorithms.orientationIndex(l0, l1, m_upper.get(m_upperIndex + 1)) == -1) {
-					// u2 is below lower
-					swap();
-				}
-			} else if (MonotoneChain.s_rli.isInteriorIntersection(1)) { 
-				// intersection in one of the end points of upper
-				// handle this intersection point
-				add(u0);
+			// check whether lower is above upper at the end of the common x-range
+			boolean above = (l1.x <= u1.x) 
+					? Predicates.orientationIndex(u0, u1, l1) == 1		// l1 is above upper
+					: Predicates.orientationIndex(l0, l1, u1) == -1;	// u1 is below lower
+			
+			if (above) {
+				Coordinate ip;
 				
-				// check orientation of l2
-				if (CGAlgorithms.orientationIndex(u0, u1, m_lower.get(m_lowerIndex + 1)) == 1) {
-					// l2 is above upper
-					swap();
+				if (l0.x == x && Predicates.orientationIndex(u0, u1, l0) == 0) {
+					// lower leaves upper in its current vertex
+					ip = l0;
+				} else if (u0.x == x && Predicates.orientationIndex(l0, l1, u0) == 0) {
+					// upper leaves lower in its current vertex
+					ip = u0;
+				} else {
+					// proper intersection
+					ip = Predicates.intersection(u0, u1, l0, l1);
+					if (ip.x < x) ip = new Coordinate(x, ip.y);	// rounding error
 				}
+				add(ip);
+				swap();
 			}
 		}
 	}
@@ -169,7 +178,7 @@ public class Status {
 		}
 		
 		if (hasTwoSegments()) {
-			intersect();
+			intersect(mc.get(index).x);
 		}
 	}
 	
@@ -210,7 +219,7 @@ public class Status {
 	}
 	
 	private void add(Coordinate p) {
-		Coordinate last = (m_result.isEmpty()) ? null : m_result.getLast();
+		Coordinate last = (m_result.isEmpty()) ? null : m_result.get(m_result.size() - 1);
 		
 		if (last == null || p.x > last.x) {
 			m_result.add(p);
@@ -36,14 +36,25 @@ public class SweepLine<S> {
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////////
-	private PriorityQueue<Event>m_timeLine = new PriorityQueue<>();	// calendar
-	private S m_status;												// status
+	private PriorityQueue<Event>m_timeLine;	// calendar
+	private S m_status;						// status
 	
 	/**
 	 * Creates new sweep line
 	 * @param s status
 	 */
 	public SweepLine(S s) {
+		m_timeLine = new PriorityQueue<>();
+		m_status = s;
+	}
+	
+	/**
+	 * Creates new sweep line for a known number of events: the calendar is not resized
+	 * @param s status
+	 * @param capacity number of events
+	 */
+	public SweepLine(S s, int capacity) {
+		m_timeLine = new PriorityQueue<>(Math.max(1, capacity));
 		m_status = s;
 	}
 	
@@ -0,0 +1,360 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFilter;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable spatial index over the triangles of a terrain.
+ * <p>
+ * The triangle vertices are stored in one primitive array (x, y, z of three vertices per triangle).
+ * Triangles are assigned to the cell of a uniform grid containing their centroid. The cells
+ * are packed in compressed row storage: the triangles of cell c are m_cellItems[m_cellStart[c]..m_cellStart[c+1]-1].
+ * Because a triangle may extend over its cell, queries enlarge the cells by the maximal
+ * distance between a centroid and a vertex (margin).
+ * The index can be reused for many viewpoints and persisted alongside the terrain.
+ */
+public class TriangleIndex {
+	private static final int MAGIC = 0x54524958;	// "TRIX"
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	private static final int READ_CHUNK = 1 << 16;	// initial capacity of arrays read by read
+
+	private double[] m_vertices;		// 9 values per triangle
+	private int m_size;					// number of triangles
+	private double m_minX, m_minY;		// origin of the grid
+	private double m_cellSize;			// side length of a cell
+	private int m_nx, m_ny;				// number of cells in x and y direction
+	private double m_margin;			// maximal distance between centroid and vertex of a triangle
+	private int[] m_cellStart;			// start index of cell in m_cellItems (length: number of cells + 1)
+	private int[] m_cellItems;			// triangle numbers ordered by cell
+
+	private TriangleIndex() {}
+
+	/**
+	 * Creates new index over all polygons of a triangulation
+	 *
+	 * @param triangles triangulation
+	 * @param cellSize side length of a grid cell in terrain units
+	 */
+	public TriangleIndex(Geometry triangles, double cellSize) {
+		final double[] vertices = new double[9*triangles.getNumGeometries()];
+		final int[] size = new int[1];
+
+		// type cast is necessary because of ambiguities in overloaded method apply
+		triangles.apply((GeometryFilter)((g) -> {
+			if (g instanceof Polygon) {
+				LineString boundary = ((Polygon)g).getExteriorRing();
+				int k = 9*size[0]++;
+
+				for (int i = 0; i < 3; i++) {
+					Coordinate c = boundary.getCoordinateN(i);
+					vertices[k++] = c.x;
+					vertices[k++] = c.y;
+					vertices[k++] = c.z;
+				}
+			}
+		}));
+		m_vertices = vertices;
+		m_size = size[0];
+		m_cellSize = cellSize;
+
+		// grid extent
+		Envelope env = triangles.getEnvelopeInternal();
+		m_minX = env.getMinX();
+		m_minY = env.getMinY();
+		m_nx = Math.max(1, (int)Math.ceil(env.getWidth()/cellSize));
+		m_ny = Math.max(1, (int)Math.ceil(env.getHeight()/cellSize));
+
+		// counting sort of triangles by cell
+		int[] cells = new int[m_size];
+		m_cellStart = new int[m_nx*m_ny + 1];
+		for (int t = 0; t < m_size; t++) {
+			final int k = 9*t;
+			final double cx = (m_vertices[k] + m_vertices[k + 3] + m_vertices[k + 6])/3;
+			final double cy = (m_vertices[k + 1] + m_vertices[k + 4] + m_vertices[k + 7])/3;
+
+			for (int i = 0; i < 9; i += 3) {
+				m_margin = Math.max(m_margin, Math.hypot(m_vertices[k + i] - cx, m_vertices[k + i + 1] - cy));
+			}
+			cells[t] = cellOf(cx, cy);
+			m_cellStart[cells[t] + 1]++;
+		}
+		for (int c = 0; c < m_nx*m_ny; c++) {
+			m_cellStart[c + 1] += m_cellStart[c];
+		}
+		int[] pos = Arrays.copyOf(m_cellStart, m_nx*m_ny);
+		m_cellItems = new int[m_size];
+		for (int t = 0; t < m_size; t++) {
+			m_cellItems[pos[cells[t]]++] = t;
+		}
+	}
+
+	/**
+	 * Returns the number of triangles
+	 * @return number of triangles
+	 */
+	public int size() {
+		return m_size;
+	}
+
+	/**
+	 * Returns the number of grid cells
+	 * @return number of cells
+	 */
+	public int getNumCells() {
+		return m_nx*m_ny;
+	}
+
+	/**
+	 * Returns the number of triangles in a cell
+	 * @param cell cell number
+	 * @return number of triangles
+	 */
+	public int getCellSize(int cell) {
+		return m_cellStart[cell + 1] - m_cellStart[cell];
+	}
+
+	/**
+	 * Returns the extent of a cell including all of its triangles
+	 * @param cell cell number
+	 * @return envelope of the cell enlarged by the margin
+	 */
+	public Envelope getCellEnvelope(int cell) {
+		final double x = m_minX + (cell%m_nx)*m_cellSize;
+		final double y = m_minY + (cell/m_nx)*m_cellSize;
+
+		return new Envelope(x - m_margin, x + m_cellSize + m_margin, y - m_margin, y + m_cellSize + m_margin);
+	}
+
+	public double getX(int t, int vertex) {
+		return m_vertices[9*t + 3*vertex];
+	}
+
+	public double getY(int t, int vertex) {
+		return m_vertices[9*t + 3*vertex + 1];
+	}
+
+	public double getZ(int t, int vertex) {
+		return m_vertices[9*t + 3*vertex + 2];
+	}
+
+	/**
+	 * Returns the packed vertices: x, y, z of three vertices per triangle
+	 * @return vertex array (must not be modified)
+	 */
+	double[] getVertices() {
+		return m_vertices;
+	}
+
+	/**
+	 * Creates a new coordinate of a triangle vertex
+	 * @param t triangle number
+	 * @param vertex vertex number [0..2]
+	 * @return new coordinate
+	 */
+	public Coordinate getCoordinate(int t, int vertex) {
+		final int k = 9*t + 3*vertex;
+		return new Coordinate(m_vertices[k], m_vertices[k + 1], m_vertices[k + 2]);
+	}
+
+	/**
+	 * Visits all triangles of a cell
+	 * @param cell cell number
+	 * @param visitor receives triangle numbers
+	 */
+	public void queryCell(int cell, IntConsumer visitor) {
+		for (int i = m_cellStart[cell]; i < m_cellStart[cell + 1]; i++) {
+			visitor.accept(m_cellItems[i]);
+		}
+	}
+
+	/**
+	 * Visits all triangles whose bounding box intersects the disc of the given radius around (x, y)
+	 *
+	 * @param x x-coordinate of the center
+	 * @param y y-coordinate of the center
+	 * @param radius radius
+	 * @param visitor receives triangle numbers
+	 */
+	public void queryRadius(double x, double y, double radius, IntConsumer visitor) {
+		querySector(x, y, radius, 0, 2*Math.PI, visitor);
+	}
+
+	/**
+	 * Visits all triangles whose bounding box intersects the disc of the given radius around (x, y)
+	 * and whose cell intersects the sector [startAngle, startAngle + angle].
+	 * Angles are measured counter-clockwise from the positive x-axis in radians.
+	 *
+	 * @param x x-coordinate of the center
+	 * @param y y-coordinate of the center
+	 * @param radius radius
+	 * @param startAngle start angle of the sector
+	 * @param angle angular width of the sector [0..2*pi]
+	 * @param visitor receives triangle numbers
+	 */
+	public void querySector(double x, double y, double radius, double startAngle, double angle, IntConsumer visitor) {
+		final double r = radius + m_margin;
+		final int i0 = Math.max(0, (int)Math.floor((x - r - m_minX)/m_cellSize));
+		final int i1 = Math.min(m_nx - 1, (int)Math.floor((x + r - m_minX)/m_cellSize));
+		final int j0 = Math.max(0, (int)Math.floor((y - r - m_minY)/m_cellSize));
+		final int j1 = Math.min(m_ny - 1, (int)Math.floor((y + r - m_minY)/m_cellSize));
+		final double r2 = radius*radius;
+
+		for (int j = j0; j <= j1; j++) {
+			for (int i = i0; i <= i1; i++) {
+				final int cell = j*m_nx + i;
+
+				if (m_cellStart[cell] == m_cellStart[cell + 1]) continue;
+				if (angle < 2*Math.PI && !intersectsSector(cell, x, y, startAngle, angle)) continue;
+
+				for (int k = m_cellStart[cell]; k < m_cellStart[cell + 1]; k++) {
+					final int t = m_cellItems[k];
+					final int v = 9*t;
+					final double minX = Math.min(m_vertices[v], Math.min(m_vertices[v + 3], m_vertices[v + 6]));
+					final double maxX = Math.max(m_vertices[v], Math.max(m_vertices[v + 3], m_vertices[v + 6]));
+					final double minY = Math.min(m_vertices[v + 1], Math.min(m_vertices[v + 4], m_vertices[v + 7]));
+					final double maxY = Math.max(m_vertices[v + 1], Math.max(m_vertices[v + 4], m_vertices[v + 7]));
+					final double dx = Math.max(0, Math.max(minX - x, x - maxX));
+					final double dy = Math.max(0, Math.max(minY - y, y - maxY));
+
+					if (dx*dx + dy*dy <= r2) visitor.accept(t);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Conservative test whether the enlarged cell intersects a sector with apex (x, y)
+	 */
+	private boolean intersectsSector(int cell, double x, double y, double startAngle, double angle) {
+		final Envelope env = getCellEnvelope(cell);
+
+		if (env.contains(x, y)) return true;
+
+		// angular interval of the cell seen from the apex: smaller than pi, since the apex is outside
+		final double ref = Math.atan2(env.centre().y - y, env.centre().x - x);
+		double lo = 0, hi = 0;
+		for (int k = 0; k < 4; k++) {
+			double a = Math.atan2(((k & 2) == 0 ? env.getMinY() : env.getMaxY()) - y, ((k & 1) == 0 ? env.getMinX() : env.getMaxX()) - x) - ref;
+			if (a > Math.PI) a -= 2*Math.PI;
+			else if (a < -Math.PI) a += 2*Math.PI;
+			lo = Math.min(lo, a);
+			hi = Math.max(hi, a);
+		}
+		// two angular intervals intersect if one of them contains the start of the other
+		return normalize(ref + lo - startAngle) <= angle || normalize(startAngle - ref - lo) <= hi - lo;
+	}
+
+	private int cellOf(double x, double y) {
+		final int i = Math.min(m_nx - 1, Math.max(0, (int)((x - m_minX)/m_cellSize)));
+		final int j = Math.min(m_ny - 1, Math.max(0, (int)((y - m_minY)/m_cellSize)));
+		return j*m_nx + i;
+	}
+
+	/**
+	 * Normalizes an angle to [0, 2*pi)
+	 */
+	private static double normalize(double a) {
+		a %= 2*Math.PI;
+		return (a < 0) ? a + 2*Math.PI : a;
+	}
+
+	/**
+	 * Writes this index in binary format
+	 * @param out output
+	 * @throws IOException
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(m_size);
+		out.writeInt(m_nx);
+		out.writeInt(m_ny);
+		out.writeDouble(m_minX);
+		out.writeDouble(m_minY);
+		out.writeDouble(m_cellSize);
+		out.writeDouble(m_margin);
+		for (int i = 0; i < 9*m_size; i++) out.writeDouble(m_vertices[i]);
+		for (int i = 0; i <= m_nx*m_ny; i++) out.writeInt(m_cellStart[i]);
+		for (int i = 0; i < m_size; i++) out.writeInt(m_cellItems[i]);
+	}
+
+	/**
+	 * Reads an index written by write. The header and the compressed row storage are validated, and the arrays grow
+	 * while they are read, hence a corrupt or truncated input fails with an IOException before a huge allocation.
+	 * @param in input
+	 * @return new index
+	 * @throws IOException
+	 */
+	public static TriangleIndex read(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) throw new IOException("not a triangle index");
+
+		TriangleIndex index = new TriangleIndex();
+		index.m_size = in.readInt();
+		index.m_nx = in.readInt();
+		index.m_ny = in.readInt();
+		index.m_minX = in.readDouble();
+		index.m_minY = in.readDouble();
+		index.m_cellSize = in.readDouble();
+		index.m_margin = in.readDouble();
+
+		if (index.m_size < 0 || index.m_size > MAX_ARRAY_SIZE/9) throw new IOException("invalid number of triangles: " + index.m_size);
+		if (index.m_nx < 1 || index.m_ny < 1 || (long)index.m_nx*index.m_ny >= MAX_ARRAY_SIZE) {
+			throw new IOException("invalid grid size: " + index.m_nx + " x " + index.m_ny);
+		}
+		if (!isFinite(index.m_minX) || !isFinite(index.m_minY) || !(index.m_cellSize > 0) || !isFinite(index.m_cellSize)
+				|| !(index.m_margin >= 0) || !isFinite(index.m_margin)) {
+			throw new IOException("invalid grid geometry");
+		}
+
+		index.m_vertices = readDoubles(in, 9*index.m_size);
+		for (double v: index.m_vertices) {
+			if (!isFinite(v)) throw new IOException("invalid vertex: " + v);
+		}
+
+		final int cells = index.m_nx*index.m_ny;
+		index.m_cellStart = readInts(in, cells + 1);
+		if (index.m_cellStart[0] != 0 || index.m_cellStart[cells] != index.m_size) throw new IOException("invalid cell start");
+		for (int i = 0; i < cells; i++) {
+			if (index.m_cellStart[i] > index.m_cellStart[i + 1]) throw new IOException("cell start not monotone at cell " + i);
+		}
+
+		index.m_cellItems = readInts(in, index.m_size);
+		for (int t: index.m_cellItems) {
+			if (t < 0 || t >= index.m_size) throw new IOException("invalid triangle number: " + t);
+		}
+		return index;
+	}
+
+	private static double[] readDoubles(DataInput in, int n) throws IOException {
+		double[] a = new double[Math.min(n, READ_CHUNK)];
+
+		for (int i = 0; i < n; i++) {
+			if (i == a.length) a = Arrays.copyOf(a, (int)Math.min(n, 2L*a.length));
+			a[i] = in.readDouble();
+		}
+		return a;
+	}
+
+	private static int[] readInts(DataInput in, int n) throws IOException {
+		int[] a = new int[Math.min(n, READ_CHUNK)];
+
+		for (int i = 0; i < n; i++) {
+			if (i == a.length) a = Arrays.copyOf(a, (int)Math.min(n, 2L*a.length));
+			a[i] = in.readInt();
+		}
+		return a;
+	}
+
+	private static boolean isFinite(double d) {
+		return !Double.isNaN(d) && !Double.isInfinite(d);
+	}
+}
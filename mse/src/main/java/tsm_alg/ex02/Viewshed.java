@@ -0,0 +1,199 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Viewshed of a viewpoint on a grid terrain: the set of visible grid points.
+ * <p>
+ * The terrain is processed front to back: grid points keyed by their distance and cells keyed by the distance of their
+ * farthest corner form one sequence sorted by distance, cells before points of equal distance.
+ * A grid point is tested against the running horizon of all cells before it: it is visible if its projection lies
+ * on or above the horizon. A cell adds the upper boundaries of its front facing triangles to the running horizon.
+ * Hence each point is tested against all cells lying completely in front of it, including the cells of its own
+ * distance range and the cells it is the farthest corner of. Only occluders in cells straddling the distance of the
+ * point are missed.
+ * Projected edges are approximated by chords, as in the horizon computation. Cells near the viewpoint span a large azimuth
+ * range and are subdivided, otherwise their chords would hide points far behind them.
+ * Each grid point is projected once by the projection kernel, and the sequence is sorted by a radix sort.
+ * The running horizon is a HorizonAccumulator of single chains: each chain takes part in O(log m) merges of m chains,
+ * and a point test takes O(log m log h) time.
+ */
+public class Viewshed {
+	private static final double EPS = 1e-9;		// relative tolerance of the visibility test
+	private static final double NEAR = 8;		// cells closer than NEAR cell sizes are subdivided
+	private static final int MAX_SPLIT = 16;	// maximal number of subdivisions of a cell edge
+
+	/**
+	 * Computes the viewshed
+	 *
+	 * @param grid terrain
+	 * @param viewPoint viewpoint
+	 * @param radius visible radius in terrain units
+	 * @return visible grid points: bit j*nx + i is set if grid point (i, j) is visible
+	 */
+	public static BitSet compute(GridTerrain grid, Coordinate viewPoint, double radius) {
+		final int nx = grid.getNx(), ny = grid.getNy();
+		final double cellSize = grid.getCellSize();
+		final BitSet visible = new BitSet(nx*ny);
+
+		// grid points within bounding box of visible disc
+		final int i0 = Math.max(0, (int)Math.floor((viewPoint.x - radius - grid.getX(0))/cellSize));
+		final int i1 = Math.min(nx - 1, (int)Math.ceil((viewPoint.x + radius - grid.getX(0))/cellSize));
+		final int j0 = Math.max(0, (int)Math.floor((viewPoint.y - radius - grid.getY(0))/cellSize));
+		final int j1 = Math.min(ny - 1, (int)Math.ceil((viewPoint.y + radius - grid.getY(0))/cellSize));
+		if (i0 > i1 || j0 > j1) return visible;
+
+		// project all grid points of the bounding box: index k = (j - j0)*w + (i - i0)
+		final int w = i1 - i0 + 1, h = j1 - j0 + 1;
+		final double[] px = new double[w*h], py = new double[w*h], dist = new double[w*h];
+		final double[] x = new double[w], y = new double[w], z = new double[w];
+		final double[] rowX = new double[w], rowY = new double[w];
+
+		for (int i = 0; i < w; i++) x[i] = grid.getX(i0 + i);
+		for (int j = 0; j < h; j++) {
+			final double gy = grid.getY(j0 + j);
+
+			for (int i = 0; i < w; i++) {
+				y[i] = gy;
+				z[i] = grid.getHeight(i0 + i, j0 + j);
+				dist[j*w + i] = Math.hypot(x[i] - viewPoint.x, gy - viewPoint.y);
+			}
+			ProjectionKernel.project(viewPoint, x, y, z, w, rowX, rowY, true);
+			System.arraycopy(rowX, 0, px, j*w, w);
+			System.arraycopy(rowY, 0, py, j*w, w);
+		}
+
+		// one sequence of cells and points within the visible radius: event e < cells is a cell, otherwise a point
+		final int[] events = sortByDistance(dist, w, h, radius);
+		final int cells = (w - 1)*(h - 1);
+		final HorizonAccumulator horizon = new HorizonAccumulator();
+		final ArrayList<MonotoneChain> chains = new ArrayList<>(4);
+
+		for (int e: events) {
+			if (e < cells) {
+				// add the front facing triangles of the cell to the horizon
+				addCell(grid, viewPoint, i0, j0, w, (e/(w - 1))*w + e%(w - 1), px, py, dist, chains);
+				for (MonotoneChain mc: chains) horizon.add(mc);
+				chains.clear();
+			} else {
+				// test the grid point against the horizon of all cells in front of it
+				final int k = e - cells;
+				final double yk = py[k];
+
+				if (Double.isNaN(yk) || yk >= horizon.getY(px[k]) - EPS*(1 + Math.abs(yk))) {
+					visible.set((j0 + k/w)*nx + i0 + k%w);
+				}
+			}
+		}
+		return visible;
+	}
+
+	/**
+	 * Sorts cells and grid points within the visible radius by distance: a cell by the distance of its farthest corner.
+	 * The sort is stable and cells are listed first, hence a cell comes before the points of equal distance.
+	 *
+	 * @param dist distances of the grid points
+	 * @return events sorted by distance: e < (w - 1)*(h - 1) is cell e = j*(w - 1) + i, otherwise point k = e - (w - 1)*(h - 1)
+	 */
+	private static int[] sortByDistance(double[] dist, int w, int h, double radius) {
+		final int cells = (w - 1)*(h - 1);
+		final long[] keys = new long[cells + w*h];
+		final int[] index = new int[keys.length];
+		int n = 0;
+
+		// distances are non-negative, hence their bit patterns are ordered like the distances
+		for (int j = 0; j < h - 1; j++) {
+			for (int i = 0; i < w - 1; i++) {
+				final int k = j*w + i;
+				final double d = Math.max(Math.max(dist[k], dist[k + 1]), Math.max(dist[k + w], dist[k + w + 1]));
+
+				if (d <= radius) {
+					keys[n] = Double.doubleToLongBits(d);
+					index[n++] = j*(w - 1) + i;
+				}
+			}
+		}
+		for (int k = 0; k < w*h; k++) {
+			if (dist[k] <= radius) {
+				keys[n] = Double.doubleToLongBits(dist[k]);
+				index[n++] = cells + k;
+			}
+		}
+
+		final int[] perm = Main.radixOrder(Arrays.copyOf(keys, n));
+		final int[] events = new int[n];
+		for (int e = 0; e < n; e++) events[e] = index[perm[e]];
+		return events;
+	}
+
+	/**
+	 * Adds the upper boundaries of the front facing triangles of the cell with lower left grid point k.
+	 * The projected edges are approximated by chords. Near the viewpoint a cell spans a large azimuth range and its
+	 * projected edges are strongly curved, hence near cells are subdivided into smaller triangles.
+	 */
+	private static void addCell(GridTerrain grid, Coordinate viewPoint, int i0, int j0, int w, int k, double[] px, double[] py, double[] dist, ArrayList<MonotoneChain> chains) {
+		final int i = i0 + k%w, j = j0 + k/w;
+		final double cellSize = grid.getCellSize();
+		final double za = grid.getHeight(i, j), zb = grid.getHeight(i + 1, j);
+		final double zc = grid.getHeight(i, j + 1), zd = grid.getHeight(i + 1, j + 1);
+		final double vx = grid.getX(i) - viewPoint.x, vy = grid.getY(j) - viewPoint.y, vz = za - viewPoint.z;
+		final double near = Math.min(Math.min(dist[k], dist[k + 1]), Math.min(dist[k + w], dist[k + w + 1]));
+		final int split = (near < NEAR*cellSize) ? (int)Math.min(MAX_SPLIT, Math.ceil(NEAR*cellSize/Math.max(near, cellSize))) : 1;
+
+		// triangle a-b-d and triangle a-d-c, see GridTerrain.computeChains
+		if (ProjectionKernel.isFrontFacing(vx, vy, vz, za - zb, zb - zd, cellSize)) {
+			if (split > 1) {
+				addSubdivided(viewPoint, grid.getX(i), grid.getY(j), za, cellSize, 0, zb - za, 0, cellSize, zd - zb, split, chains);
+			} else {
+				addTriangle(k, k + 1, k + w + 1, px, py, chains);
+			}
+		}
+		if (ProjectionKernel.isFrontFacing(vx, vy, vz, zc - zd, za - zc, cellSize)) {
+			if (split > 1) {
+				addSubdivided(viewPoint, grid.getX(i), grid.getY(j), za, cellSize, cellSize, zd - za, -cellSize, 0, zc - zd, split, chains);
+			} else {
+				addTriangle(k, k + w + 1, k + w, px, py, chains);
+			}
+		}
+	}
+
+	private static void addTriangle(int a, int b, int c, double[] px, double[] py, ArrayList<MonotoneChain> chains) {
+		if (!Double.isNaN(py[a]) && !Double.isNaN(py[b]) && !Double.isNaN(py[c])) {
+			Main.addWrappedUpperBoundary(chains, new Coordinate(px[a], py[a]), new Coordinate(px[b], py[b]), new Coordinate(px[c], py[c]));
+		}
+	}
+
+	/**
+	 * Adds the upper boundaries of the split*split sub-triangles of triangle (a, a + e, a + e + f)
+	 */
+	private static void addSubdivided(Coordinate viewPoint, double ax, double ay, double az, double ex, double ey, double ez, double fx, double fy, double fz, int split, ArrayList<MonotoneChain> chains) {
+		// vertex (u, v) = a + u/split*e + v/split*f, 0 <= v <= u <= split, at index u*(u + 1)/2 + v
+		final int n = (split + 1)*(split + 2)/2;
+		final double[] x = new double[n], y = new double[n], z = new double[n], sx = new double[n], sy = new double[n];
+
+		for (int u = 0; u <= split; u++) {
+			for (int v = 0; v <= u; v++) {
+				final int m = u*(u + 1)/2 + v;
+				final double s = (double)u/split, t = (double)v/split;
+
+				x[m] = ax + s*ex + t*fx;
+				y[m] = ay + s*ey + t*fy;
+				z[m] = az + s*ez + t*fz;
+			}
+		}
+		ProjectionKernel.project(viewPoint, x, y, z, n, sx, sy, true);
+
+		for (int u = 0; u < split; u++) {
+			for (int v = 0; v <= u; v++) {
+				final int m = u*(u + 1)/2 + v, m1 = (u + 1)*(u + 2)/2 + v;
+
+				addTriangle(m, m1, m1 + 1, sx, sy, chains);
+				if (v < u) addTriangle(m, m1 + 1, m + 1, sx, sy, chains);
+			}
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package tsm_alg.helpers;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+/**
+ * Fast and exact geometric predicates for the sweep and hull algorithms.
+ * <p>
+ * The orientation test follows Shewchuk's adaptive orient2d: a floating-point filter decides almost all cases,
+ * only nearly degenerate cases are evaluated by exact expansion arithmetic. The expansions
+ * are stored in a per-thread scratch array, hence no objects are allocated.
+ * <p>
+ * J. R. Shewchuk: Adaptive Precision Floating-Point Arithmetic and Fast Robust Geometric Predicates, 1997
+ */
+public class Predicates {
+	private static final double EPSILON = 0x1p-53;					// half of machine epsilon
+	private static final double SPLITTER = 0x1p27 + 1;				// used to split doubles into two halves
+	private static final double RESULT_ERR_BOUND = (3.0 + 8.0*EPSILON)*EPSILON;
+	private static final double CCW_ERR_BOUND_A = (3.0 + 16.0*EPSILON)*EPSILON;
+	private static final double CCW_ERR_BOUND_B = (2.0 + 12.0*EPSILON)*EPSILON;
+	private static final double CCW_ERR_BOUND_C = (9.0 + 64.0*EPSILON)*EPSILON*EPSILON;
+
+	// scratch space of expansions: B[4], u[4], C1[8], C2[12], D[16]
+	private static final int B = 0, U = 4, C1 = 8, C2 = 16, D = 28, SCRATCH_SIZE = 44;
+	private static final ThreadLocal<double[]> s_scratch = ThreadLocal.withInitial(() -> new double[SCRATCH_SIZE]);
+
+	private Predicates() {}
+
+	/**
+	 * Exact orientation test
+	 *
+	 * @return 1 if c is to the left of the directed line a-b (counter-clockwise),
+	 * -1 if c is to the right (clockwise), 0 if a, b, c are collinear
+	 */
+	public static int orientationIndex(Coordinate a, Coordinate b, Coordinate c) {
+		return orientationIndex(a.x, a.y, b.x, b.y, c.x, c.y);
+	}
+
+	/**
+	 * Exact orientation test
+	 *
+	 * @return 1 if c is to the left of the directed line a-b (counter-clockwise),
+	 * -1 if c is to the right (clockwise), 0 if a, b, c are collinear
+	 */
+	public static int orientationIndex(double ax, double ay, double bx, double by, double cx, double cy) {
+		final double detLeft = (ax - cx)*(by - cy);
+		final double detRight = (ay - cy)*(bx - cx);
+		final double det = detLeft - detRight;
+		final double detSum;
+
+		if (detLeft > 0) {
+			if (detRight <= 0) return signum(det);
+			detSum = detLeft + detRight;
+		} else if (detLeft < 0) {
+			if (detRight >= 0) return signum(det);
+			detSum = -detLeft - detRight;
+		} else {
+			return signum(det);
+		}
+
+		final double errBound = CCW_ERR_BOUND_A*detSum;
+		if (det >= errBound || -det >= errBound) return signum(det);
+
+		return signum(orientationAdapt(ax, ay, bx, by, cx, cy, detSum));
+	}
+
+	/**
+	 * Computes the intersection point of two properly crossing segments p0-p1 and q0-q1.
+	 * The result is clamped to the common x-range of both segments.
+	 *
+	 * @return new intersection point
+	 */
+	public static Coordinate intersection(Coordinate p0, Coordinate p1, Coordinate q0, Coordinate q1) {
+		// signed areas of p0 and p1 with respect to q0-q1
+		final double qx = q1.x - q0.x, qy = q1.y - q0.y;
+		final double d0 = qx*(p0.y - q0.y) - qy*(p0.x - q0.x);
+		final double d1 = qx*(p1.y - q0.y) - qy*(p1.x - q0.x);
+		final double t = (d0 == d1) ? 0.5 : d0/(d0 - d1);
+		final double xMin = Math.max(Math.min(p0.x, p1.x), Math.min(q0.x, q1.x));
+		final double xMax = Math.min(Math.max(p0.x, p1.x), Math.max(q0.x, q1.x));
+
+		final double x = Math.max(xMin, Math.min(xMax, p0.x + t*(p1.x - p0.x)));
+		final double y = p0.y + t*(p1.y - p0.y);
+		return new Coordinate(x, y);
+	}
+
+	/**
+	 * Computes the point of the segment p0-p1 with given x-coordinate
+	 *
+	 * @param x x-coordinate in [p0.x, p1.x]
+	 * @return p0, p1 or a new point on the segment
+	 */
+	public static Coordinate pointAtX(Coordinate p0, Coordinate p1, double x) {
+		if (x == p0.x) return p0;
+		if (x == p1.x) return p1;
+		return new Coordinate(x, p0.y + (x - p0.x)*(p1.y - p0.y)/(p1.x - p0.x));
+	}
+
+	private static int signum(double d) {
+		return (d > 0) ? 1 : (d < 0) ? -1 : 0;
+	}
+
+	/**
+	 * Adaptive stages of orient2d
+	 */
+	private static double orientationAdapt(double ax, double ay, double bx, double by, double cx, double cy, double detSum) {
+		final double[] s = s_scratch.get();
+		final double acx = ax - cx, bcx = bx - cx, acy = ay - cy, bcy = by - cy;
+
+		// stage B: exact determinant of the rounded differences
+		final double detLeft = acx*bcy, detLeftTail = twoProductTail(acx, bcy, detLeft);
+		final double detRight = acy*bcx, detRightTail = twoProductTail(acy, bcx, detRight);
+		twoTwoDiff(detLeft, detLeftTail, detRight, detRightTail, s, B);
+
+		double det = s[B] + s[B + 1] + s[B + 2] + s[B + 3];
+		double errBound = CCW_ERR_BOUND_B*detSum;
+		if (det >= errBound || -det >= errBound) return det;
+
+		final double acxTail = twoDiffTail(ax, cx, acx), bcxTail = twoDiffTail(bx, cx, bcx);
+		final double acyTail = twoDiffTail(ay, cy, acy), bcyTail = twoDiffTail(by, cy, bcy);
+		if (acxTail == 0 && acyTail == 0 && bcxTail == 0 && bcyTail == 0) return det;
+
+		// stage C: first order correction of the differences
+		errBound = CCW_ERR_BOUND_C*detSum + RESULT_ERR_BOUND*Math.abs(det);
+		det += (acx*bcyTail + bcy*acxTail) - (acy*bcxTail + bcx*acyTail);
+		if (det >= errBound || -det >= errBound) return det;
+
+		// stage D: exact sum of all terms
+		double p, q;
+		p = acxTail*bcy; q = acyTail*bcx;
+		twoTwoDiff(p, twoProductTail(acxTail, bcy, p), q, twoProductTail(acyTail, bcx, q), s, U);
+		final int c1Len = fastExpansionSum(s, B, 4, s, U, 4, s, C1);
+
+		p = acx*bcyTail; q = acy*bcxTail;
+		twoTwoDiff(p, twoProductTail(acx, bcyTail, p), q, twoProductTail(acy, bcxTail, q), s, U);
+		final int c2Len = fastExpansionSum(s, C1, c1Len, s, U, 4, s, C2);
+
+		p = acxTail*bcyTail; q = acyTail*bcxTail;
+		twoTwoDiff(p, twoProductTail(acxTail, bcyTail, p), q, twoProductTail(acyTail, bcxTail, q), s, U);
+		final int dLen = fastExpansionSum(s, C2, c2Len, s, U, 4, s, D);
+
+		// the most significant component determines the sign
+		return s[D + dLen - 1];
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////
+	// error-free transformations: x is the rounded result, the returned value is the rounding error
+
+	private static double twoSumTail(double a, double b, double x) {
+		final double bVirt = x - a;
+		final double aVirt = x - bVirt;
+		return (a - aVirt) + (b - bVirt);
+	}
+
+	private static double fastTwoSumTail(double a, double b, double x) {
+		return b - (x - a);
+	}
+
+	private static double twoDiffTail(double a, double b, double x) {
+		final double bVirt = a - x;
+		final double aVirt = x + bVirt;
+		return (a - aVirt) + (bVirt - b);
+	}
+
+	private static double twoProductTail(double a, double b, double x) {
+		double c = SPLITTER*a;
+		final double aHi = c - (c - a), aLo = a - aHi;
+		c = SPLITTER*b;
+		final double bHi = c - (c - b), bLo = b - bHi;
+		final double err = ((x - aHi*bHi) - aLo*bHi) - aHi*bLo;
+		return aLo*bLo - err;
+	}
+
+	/**
+	 * Computes the expansion (a1 + a0) - (b1 + b0) with four components in increasing magnitude
+	 */
+	private static void twoTwoDiff(double a1, double a0, double b1, double b0, double[] out, int off) {
+		// (a1 + a0) - b0 = j + i + x0
+		double x = a0 - b0;
+		final double x0 = twoDiffTail(a0, b0, x);
+		double j = a1 + x;
+		final double i = twoSumTail(a1, x, j);
+
+		// (j + i) - b1 = x3 + x2 + x1
+		x = i - b1;
+		final double x1 = twoDiffTail(i, b1, x);
+		final double x3 = j + x;
+		final double x2 = twoSumTail(j, x, x3);
+
+		out[off] = x0;
+		out[off + 1] = x1;
+		out[off + 2] = x2;
+		out[off + 3] = x3;
+	}
+
+	/**
+	 * Sums two nonoverlapping expansions e and f into h and eliminates zero components
+	 * @return length of h
+	 */
+	private static int fastExpansionSum(double[] e, int eOff, int eLen, double[] f, int fOff, int fLen, double[] h, int hOff) {
+		int ei = 0, fi = 0, hi = 0;
+		double eNow = e[eOff], fNow = f[fOff];
+		double q, qNew, hh;
+
+		if ((fNow > eNow) == (fNow > -eNow)) {
+			q = eNow;
+			eNow = (++ei < eLen) ? e[eOff + ei] : 0;
+		} else {
+			q = fNow;
+			fNow = (++fi < fLen) ? f[fOff + fi] : 0;
+		}
+		if (ei < eLen && fi < fLen) {
+			if ((fNow > eNow) == (fNow > -eNow)) {
+				qNew = eNow + q;
+				hh = fastTwoSumTail(eNow, q, qNew);
+				eNow = (++ei < eLen) ? e[eOff + ei] : 0;
+			} else {
+				qNew = fNow + q;
+				hh = fastTwoSumTail(fNow, q, qNew);
+				fNow = (++fi < fLen) ? f[fOff + fi] : 0;
+			}
+			q = qNew;
+			if (hh != 0) h[hOff + hi++] = hh;
+
+			while (ei < eLen && fi < fLen) {
+				if ((fNow > eNow) == (fNow > -eNow)) {
+					qNew = q + eNow;
+					hh = twoSumTail(q, eNow, qNew);
+					eNow = (++ei < eLen) ? e[eOff + ei] : 0;
+				} else {
+					qNew = q + fNow;
+					hh = twoSumTail(q, fNow, qNew);
+					fNow = (++fi < fLen) ? f[fOff + fi] : 0;
+				}
+				q = qNew;
+				if (hh != 0) h[hOff + hi++] = hh;
+			}
+		}
+		while (ei < eLen) {
+			qNew = q + eNow;
+			hh = twoSumTail(q, eNow, qNew);
+			eNow = (++ei < eLen) ? e[eOff + ei] : 0;
+			q = qNew;
+			if (hh != 0) h[hOff + hi++] = hh;
+		}
+		while (fi < fLen) {
+			qNew = q + fNow;
+			hh = twoSumTail(q, fNow, qNew);
+			fNow = (++fi < fLen) ? f[fOff + fi] : 0;
+			q = qNew;
+			if (hh != 0) h[hOff + hi++] = hh;
+		}
+		if (q != 0 || hi == 0) h[hOff + hi++] = q;
+		return hi;
+	}
+}
@@ -19,4 +19,21 @@ public class VectorHelper {
         return new Coordinate(x, y, z);
     }
 
+    /**
+     * Determinant of the 3x3 matrix with rows a, b, c: a . (b x c)
+     */
+    public static double det(double a1, double a2, double a3, double b1, double b2, double b3, double c1, double c2, double c3){
+        return a1*det(b2, b3, c2, c3) - a2*det(b1, b3, c1, c3) + a3*det(b1, b2, c1, c2);
+    }
+
+    /**
+     * Cross product v1 x v2 without allocation
+     * @param result receives x, y, z at result[0..2]
+     */
+    public static void crossProduct(double x1, double y1, double z1, double x2, double y2, double z2, double[] result){
+        result[0] = det(y1, z1, y2, z2);
+        result[1] = -det(x1, z1, x2, z2);
+        result[2] = det(x1, y1, x2, y2);
+    }
+
 }
@@ -0,0 +1,88 @@
+package tsm_alg.ex02;
+
+import static tsm_alg.ex02.Horizons.chain;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares Horizon.merge with a brute-force upper envelope of all input chains
+ */
+public class HorizonMergeTest {
+	
+	@Test
+	public void randomChains() {
+		Random r = new Random(1);
+		
+		for (int t = 0; t < 500; t++) {
+			Horizon a = Horizons.random(r, 1 + r.nextInt(8), 1000, false);
+			Horizon b = Horizons.random(r, 1 + r.nextInt(8), 1000, false);
+			
+			assertMerge(a, b);
+		}
+	}
+	
+	@Test
+	public void degenerateChains() {
+		// integer coordinates on a small grid: shared endpoints, vertical jumps, and collinear overlaps
+		Random r = new Random(2);
+		
+		for (int t = 0; t < 2000; t++) {
+			Horizon a = Horizons.random(r, 1 + r.nextInt(6), 4, true);
+			Horizon b = Horizons.random(r, 1 + r.nextInt(6), 4, true);
+			
+			assertMerge(a, b);
+		}
+	}
+	
+	@Test
+	public void sharedEndpoints() {
+		Horizon a = Horizons.of(chain(0, 0, 2, 2, 4, 0));
+		Horizon b = Horizons.of(chain(0, 0, 2, 1, 4, 0));
+		
+		assertMerge(a, b);
+		assertMerge(b, a);
+	}
+	
+	@Test
+	public void verticalJumps() {
+		Horizon a = Horizons.of(chain(0, 0, 2, 2), chain(2, 0, 4, 1));
+		Horizon b = Horizons.of(chain(1, 1, 2, 1), chain(2, 3, 3, 0));
+		
+		assertMerge(a, b);
+		assertMerge(b, a);
+	}
+	
+	@Test
+	public void collinearOverlaps() {
+		Horizon a = Horizons.of(chain(0, 0, 4, 4));
+		Horizon b = Horizons.of(chain(1, 1, 3, 3, 5, 1));
+		Horizon c = Horizons.of(chain(2, 2, 4, 4, 6, 0));
+		
+		assertMerge(a, b);
+		assertMerge(b, a);
+		assertMerge(a, c);
+		assertMerge(c, a);
+		assertMerge(a, a);
+	}
+	
+	/**
+	 * Checks the merged horizon against the upper envelope of both horizons at all vertex x-coordinates and between them
+	 */
+	private static void assertMerge(Horizon a, Horizon b) {
+		Horizon m = a.merge(b);
+		
+		Horizons.assertValid(m);
+		
+		double[] xs = Horizons.vertexXs(a, b, m);
+		for (int i = 0; i < xs.length; i++) {
+			assertEnvelope(a, b, m, xs[i]);
+			if (i + 1 < xs.length) assertEnvelope(a, b, m, 0.5*(xs[i] + xs[i + 1]));
+		}
+	}
+	
+	private static void assertEnvelope(Horizon a, Horizon b, Horizon m, double x) {
+		Horizons.assertHeight(Math.max(Horizons.envelope(a, x), Horizons.envelope(b, x)), m, x);
+	}
+}
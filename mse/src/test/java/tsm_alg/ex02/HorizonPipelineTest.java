@@ -0,0 +1,64 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the pipelined horizon computation with the staged computation:
+ * ParallelTriangulator, TriangleIndex.queryRadius and computeHorizon
+ */
+public class HorizonPipelineTest {
+	private static final int N = 80;
+	private static final double OVERLAP = 10*Terrains.CELL_SIZE;
+	
+	private final List<Coordinate> m_pts = jitter(Terrains.grid(N, 5, 10), 6);
+	
+	@Test
+	public void stagedEquivalence() throws InterruptedException {
+		for (int parallelism: new int[] { 1, 3 }) {
+			TriangleIndex index = new TriangleIndex(ParallelTriangulator.triangulate(m_pts, new GeometryFactory(), parallelism, OVERLAP), 20*Terrains.CELL_SIZE);
+			
+			for (Coordinate vp: new Coordinate[] { Terrains.at(N, 0.45, 0.55, 800), Terrains.at(N, 0.1, 0.9, 500), Terrains.at(N, 0.7, 0.3, 1500) }) {
+				for (boolean wrapAround: new boolean[] { false, true }) {
+					for (double radius: new double[] { 300, 700, 1e9 }) {
+						ArrayList<MonotoneChain> chains = Main.computeChains(index, vp, radius, wrapAround);
+						HorizonPipeline pipeline = new HorizonPipeline(vp, radius, OVERLAP, wrapAround, parallelism);
+						
+						Main.sortChains(chains);
+						Horizons.assertSameHeights(Main.computeHorizon(chains), pipeline.run(x(), y(), z(), m_pts.size()));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Moves the grid points randomly: the Delaunay triangulation of a regular grid is ambiguous
+	 */
+	private static List<Coordinate> jitter(List<Coordinate> pts, long seed) {
+		final Random r = new Random(seed);
+		
+		for (Coordinate c: pts) {
+			c.x += (r.nextDouble() - 0.5)*Terrains.CELL_SIZE/4;
+			c.y += (r.nextDouble() - 0.5)*Terrains.CELL_SIZE/4;
+		}
+		return pts;
+	}
+	
+	private double[] x() {
+		return m_pts.stream().mapToDouble((c) -> c.x).toArray();
+	}
+	
+	private double[] y() {
+		return m_pts.stream().mapToDouble((c) -> c.y).toArray();
+	}
+	
+	private double[] z() {
+		return m_pts.stream().mapToDouble((c) -> c.z).toArray();
+	}
+}
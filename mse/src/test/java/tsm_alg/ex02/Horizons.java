@@ -0,0 +1,131 @@
+package tsm_alg.ex02;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random horizons and height comparisons of horizon tests
+ */
+final class Horizons {
+	private static final double EPS = 1e-9;
+	
+	private Horizons() {}
+	
+	/**
+	 * Creates a random horizon: consecutive chains share an endpoint, jump vertically, or leave a gap
+	 * 
+	 * @param r random generator
+	 * @param chains number of chains
+	 * @param range range of coordinates
+	 * @param integral true: integer coordinates, hence many shared endpoints and collinear overlaps
+	 */
+	static Horizon random(Random r, int chains, double range, boolean integral) {
+		Horizon h = new Horizon(chains);
+		double x = value(r, range, integral);
+		Coordinate last = null;
+		
+		for (int c = 0; c < chains; c++) {
+			List<Coordinate> coords = new ArrayList<>();
+			
+			if (last != null) {
+				switch (r.nextInt(3)) {
+				case 0: coords.add(last); break;										// shared endpoint
+				case 1: coords.add(new Coordinate(x, last.y + 1 + value(r, range, integral))); break;	// vertical jump
+				default: x += 1 + value(r, range, integral); break;						// gap
+				}
+			}
+			if (coords.isEmpty()) coords.add(new Coordinate(x, value(r, range, integral)));
+			for (int i = 1 + r.nextInt(4); i > 0; i--) {
+				x += (integral) ? 1 : 1 + value(r, range, integral);
+				coords.add(new Coordinate(x, value(r, range, integral)));
+			}
+			MonotoneChain mc = MonotoneChain.create(coords);
+			h.add(mc);
+			last = mc.getLast();
+		}
+		return h;
+	}
+	
+	private static double value(Random r, double range, boolean integral) {
+		return (integral) ? r.nextInt((int)range) : r.nextDouble()*range;
+	}
+	
+	static Horizon of(MonotoneChain... chains) {
+		Horizon h = new Horizon(chains.length);
+		for (MonotoneChain mc: chains) h.add(mc);
+		return h;
+	}
+	
+	static MonotoneChain chain(double... xy) {
+		List<Coordinate> coords = new ArrayList<>();
+		for (int i = 0; i < xy.length; i += 2) coords.add(new Coordinate(xy[i], xy[i + 1]));
+		return MonotoneChain.create(coords);
+	}
+	
+	/**
+	 * Brute force: maximum height of all chains covering x
+	 */
+	static double envelope(Horizon h, double x) {
+		double y = Double.NEGATIVE_INFINITY;
+		
+		for (MonotoneChain mc: h.getChains()) {
+			if (mc.getMinX() <= x && x <= mc.getMaxX()) y = Math.max(y, mc.getY(x));
+		}
+		return y;
+	}
+	
+	/**
+	 * Checks that actual is valid and has the same heights as expected.
+	 * The heights are compared at all vertex x-coordinates of both and midway between them; both are piecewise linear
+	 * with breakpoints at these x-coordinates, hence they are equal if they agree there.
+	 */
+	static void assertSameHeights(Horizon expected, Horizon actual) {
+		assertValid(actual);
+		
+		double[] xs = vertexXs(expected, actual);
+		for (int i = 0; i < xs.length; i++) {
+			assertHeight(expected.getY(xs[i]), actual, xs[i]);
+			if (i + 1 < xs.length) {
+				final double x = 0.5*(xs[i] + xs[i + 1]);
+				assertHeight(expected.getY(x), actual, x);
+			}
+		}
+	}
+	
+	static void assertValid(Horizon h) {
+		assertTrue("invalid horizon", h.isValid());
+		for (MonotoneChain mc: h.getChains()) assertTrue("invalid chain", mc.isValid());
+	}
+	
+	static void assertHeight(double expected, Horizon actual, double x) {
+		final double y = actual.getY(x);
+		
+		if (expected == Double.NEGATIVE_INFINITY) {
+			assertEquals("gap at x = " + x, expected, y, 0);
+		} else {
+			assertEquals("height at x = " + x, expected, y, EPS*(1 + Math.abs(expected)));
+		}
+	}
+	
+	static double[] vertexXs(Horizon... horizons) {
+		int n = 0;
+		for (Horizon h: horizons) n += h.numVertices();
+		
+		double[] xs = new double[n];
+		int k = 0;
+		for (Horizon h: horizons) {
+			for (MonotoneChain mc: h.getChains()) {
+				for (Coordinate p: mc.getCoords()) xs[k++] = p.x;
+			}
+		}
+		Arrays.sort(xs);
+		return xs;
+	}
+}
@@ -0,0 +1,70 @@
+package tsm_alg.ex02;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares the splicing merge (galloping search) and the slab merge with one plane sweep over all chains
+ */
+public class MergeEquivalenceTest {
+	private static final int PARALLELISM = 4;
+	
+	/**
+	 * Overlapping horizons of random chains: mostly sweeps
+	 */
+	@Test
+	public void randomChains() {
+		Random r = new Random(3);
+		
+		for (int t = 0; t < 300; t++) {
+			Horizon a = Horizons.random(r, 1 + r.nextInt(20), 1000, r.nextBoolean());
+			Horizon b = Horizons.random(r, 1 + r.nextInt(20), 1000, r.nextBoolean());
+			
+			assertEquivalent(a, b);
+		}
+	}
+	
+	/**
+	 * Horizons built of alternating runs of one sorted chain list: mostly splices, sweeps at shared endpoints
+	 */
+	@Test
+	public void sortedChains() {
+		Random r = new Random(4);
+		
+		for (int t = 0; t < 100; t++) {
+			Horizon all = Horizons.random(r, 1 + r.nextInt(200), 100, r.nextBoolean());
+			Horizon a = new Horizon(), b = new Horizon();
+			boolean toA = r.nextBoolean();
+			
+			for (MonotoneChain mc: all.getChains()) {
+				if (r.nextInt(4) == 0) toA = !toA;
+				(toA ? a : b).add(mc);
+			}
+			assertEquivalent(a, b);
+		}
+	}
+	
+	/**
+	 * Horizons large enough to be merged in several slabs
+	 */
+	@Test
+	public void slabs() {
+		Random r = new Random(5);
+		
+		for (int t = 0; t < 10; t++) {
+			Horizon a = Horizons.random(r, 4000, 1000, t%2 == 0);
+			Horizon b = Horizons.random(r, 4000, 1000, t%2 == 0);
+			
+			assertEquivalent(a, b);
+		}
+	}
+	
+	private static void assertEquivalent(Horizon a, Horizon b) {
+		final Horizon expected = a.mergeSweep(b);
+		
+		Horizons.assertSameHeights(expected, a.merge(b));
+		Horizons.assertSameHeights(expected, b.merge(a));
+		Horizons.assertSameHeights(expected, a.merge(b, PARALLELISM));
+	}
+}
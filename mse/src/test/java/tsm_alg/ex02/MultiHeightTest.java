@@ -0,0 +1,73 @@
+package tsm_alg.ex02;
+
+import static org.junit.Assert.assertEquals;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the multi-height computations with one single-height run per eye height
+ */
+public class MultiHeightTest {
+	private static final int N = 80;
+	private static final double[] EYE_Z = { 200, 401.8, 600, 1500 };
+	
+	private final List<Coordinate> m_pts = Terrains.grid(N, 3, 10);
+	private final Coordinate m_vp = Terrains.at(N, 0.45, 0.55, 0);
+	
+	@Test
+	public void gridChains() {
+		GridTerrain grid = GridTerrain.create(m_pts);
+		
+		for (boolean wrapAround: new boolean[] { false, true }) {
+			for (double radius: new double[] { 600, 1e9 }) {
+				List<ArrayList<MonotoneChain>> multi = grid.computeChains(m_vp.x, m_vp.y, EYE_Z, radius, wrapAround);
+				
+				assertEquals(EYE_Z.length, multi.size());
+				for (int h = 0; h < EYE_Z.length; h++) {
+					ArrayList<MonotoneChain> single = grid.computeChains(new Coordinate(m_vp.x, m_vp.y, EYE_Z[h]), radius, wrapAround);
+					
+					assertEquals(single.size(), multi.get(h).size());
+					Horizons.assertSameHeights(Main.computeHorizon(single), Main.computeHorizon(multi.get(h)));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void indexChains() {
+		TriangleIndex index = Terrains.index(m_pts);
+		
+		for (boolean wrapAround: new boolean[] { false, true }) {
+			for (double radius: new double[] { 600, 1e9 }) {
+				List<ArrayList<MonotoneChain>> multi = Main.computeChains(index, m_vp.x, m_vp.y, EYE_Z, radius, wrapAround);
+				
+				assertEquals(EYE_Z.length, multi.size());
+				for (int h = 0; h < EYE_Z.length; h++) {
+					ArrayList<MonotoneChain> single = Main.computeChains(index, new Coordinate(m_vp.x, m_vp.y, EYE_Z[h]), radius, wrapAround);
+					
+					assertEquals(single.size(), multi.get(h).size());
+					Horizons.assertSameHeights(Main.computeHorizon(single), Main.computeHorizon(multi.get(h)));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void horizons() {
+		GridTerrain grid = GridTerrain.create(m_pts);
+		List<ArrayList<MonotoneChain>> chains = grid.computeChains(m_vp.x, m_vp.y, EYE_Z, 1e9, true);
+		
+		for (int parallelism: new int[] { 1, 3 }) {
+			Horizon[] horizons = Main.computeHorizons(chains, parallelism);
+			
+			assertEquals(EYE_Z.length, horizons.length);
+			for (int h = 0; h < EYE_Z.length; h++) {
+				Horizons.assertSameHeights(Main.computeHorizon(chains.get(h)), horizons[h]);
+			}
+		}
+	}
+}
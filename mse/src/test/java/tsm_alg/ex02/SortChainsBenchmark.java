@@ -0,0 +1,47 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Merge costs of the divide-and-conquer horizon computation for chains in query order, in random order,
+ * and sorted by Main.sortChains, on a rough synthetic terrain.
+ */
+public class SortChainsBenchmark {
+	private static final int N = 400;				// grid points per row and column
+	private static final double ROUGHNESS = 30;		// height noise: many front facing triangles
+	private static final int WARMUPS = 3, RUNS = 5;
+
+	private static volatile long s_sink;	// prevents dead code elimination
+
+	public static void main(String[] args) {
+		final TriangleIndex index = Terrains.index(Terrains.grid(N, 42, ROUGHNESS));
+		final Coordinate vp = Terrains.at(N, 0.45, 0.55, 420);
+		final ArrayList<MonotoneChain> query = Main.computeChains(index, vp, 1e9, true);
+		final ArrayList<MonotoneChain> shuffled = new ArrayList<>(query);
+		final ArrayList<MonotoneChain> sorted = new ArrayList<>(query);
+
+		Collections.shuffle(shuffled, new Random(1));
+		System.out.printf("chains: %d, sort: %.2f ms%n", query.size(), time(() -> Main.sortChains(new ArrayList<>(query))));
+
+		Main.sortChains(sorted);
+		System.out.printf("merge query order: %.2f ms, random order: %.2f ms, sorted: %.2f ms%n",
+			time(() -> s_sink += Main.computeHorizon(query).size()),
+			time(() -> s_sink += Main.computeHorizon(shuffled).size()),
+			time(() -> s_sink += Main.computeHorizon(sorted).size()));
+	}
+
+	/**
+	 * @return average time per run in ms
+	 */
+	private static double time(Runnable r) {
+		for (int i = 0; i < WARMUPS; i++) r.run();
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) r.run();
+		return (System.nanoTime() - start)/1e6/RUNS;
+	}
+}
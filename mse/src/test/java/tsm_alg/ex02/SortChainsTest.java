@@ -0,0 +1,55 @@
+package tsm_alg.ex02;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+/**
+ * Checks Main.sortChains: order by minimal x-coordinate, permutation, and unchanged horizon
+ */
+public class SortChainsTest {
+	
+	@Test
+	public void sortsByMinX() {
+		final int n = 60;
+		TriangleIndex index = Terrains.index(Terrains.grid(n, 1, 20));
+		Coordinate vp = Terrains.at(n, 0.45, 0.55, 420);
+		
+		for (boolean wrapAround: new boolean[] { false, true }) {
+			ArrayList<MonotoneChain> chains = Main.computeChains(index, vp, 1e9, wrapAround);
+			Collections.shuffle(chains, new Random(2));
+			
+			ArrayList<MonotoneChain> sorted = new ArrayList<>(chains);
+			Main.sortChains(sorted);
+			
+			assertEquals(chains.size(), sorted.size());
+			IdentityHashMap<MonotoneChain, Boolean> set = new IdentityHashMap<>();
+			for (MonotoneChain mc: sorted) set.put(mc, Boolean.TRUE);
+			for (MonotoneChain mc: chains) assertTrue("lost chain", set.containsKey(mc));
+			
+			for (int i = 1; i < sorted.size(); i++) {
+				assertTrue("not sorted at " + i, sorted.get(i - 1).getMinX() <= sorted.get(i).getMinX());
+			}
+			Horizons.assertSameHeights(Main.computeHorizon(chains), Main.computeHorizon(sorted));
+		}
+	}
+	
+	@Test
+	public void negativeAndEqualKeys() {
+		ArrayList<MonotoneChain> chains = new ArrayList<>();
+		double[] minX = { 3, -0.0, -2.5, 0.0, -1e-300, 1e300, -2.5, 7 };
+		
+		for (double x: minX) chains.add(Horizons.chain(x, 0, x + 1 + Math.abs(x), 1));
+		Main.sortChains(chains);
+		for (int i = 1; i < chains.size(); i++) {
+			assertTrue("not sorted at " + i, chains.get(i - 1).getMinX() <= chains.get(i).getMinX());
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package tsm_alg.ex02;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic terrains of horizon tests: a regular grid of hills with optional random roughness
+ */
+final class Terrains {
+	static final double X0 = 677000, Y0 = 242000;	// lower left grid point
+	static final double CELL_SIZE = 25;
+	
+	private Terrains() {}
+	
+	/**
+	 * Creates a square grid of terrain points in row-major order
+	 * 
+	 * @param n number of grid points per row and column
+	 * @param seed random seed
+	 * @param roughness amplitude of uniform noise added to each height
+	 * @return terrain points
+	 */
+	static List<Coordinate> grid(int n, long seed, double roughness) {
+		final Random r = new Random(seed);
+		final double[] h = new double[n*n];
+		
+		for (int k = 0; k < 40; k++) {
+			final double cx = r.nextDouble()*n, cy = r.nextDouble()*n, a = r.nextDouble()*300, s = 2 + r.nextDouble()*n/4;
+			
+			for (int j = 0; j < n; j++) {
+				for (int i = 0; i < n; i++) {
+					h[j*n + i] += a*Math.exp(-((i - cx)*(i - cx) + (j - cy)*(j - cy))/(2*s*s));
+				}
+			}
+		}
+		
+		List<Coordinate> pts = new ArrayList<>(n*n);
+		for (int j = 0; j < n; j++) {
+			for (int i = 0; i < n; i++) {
+				pts.add(new Coordinate(X0 + i*CELL_SIZE, Y0 + j*CELL_SIZE, 400 + h[j*n + i] + roughness*r.nextDouble()));
+			}
+		}
+		return pts;
+	}
+	
+	/**
+	 * Triangulates terrain points and builds a triangle index
+	 */
+	static TriangleIndex index(List<Coordinate> pts) {
+		return new TriangleIndex(ParallelTriangulator.triangulate(pts, new GeometryFactory(), 1, 0), 20*CELL_SIZE);
+	}
+	
+	/**
+	 * @return point of the grid of n x n points at relative position (u, v) in [0, 1] and height z
+	 */
+	static Coordinate at(int n, double u, double v, double z) {
+		return new Coordinate(X0 + u*(n - 1)*CELL_SIZE, Y0 + v*(n - 1)*CELL_SIZE, z);
+	}
+}
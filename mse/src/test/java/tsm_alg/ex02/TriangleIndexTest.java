@@ -0,0 +1,101 @@
+package tsm_alg.ex02;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Round trip of the binary format of TriangleIndex and rejection of corrupt input
+ */
+public class TriangleIndexTest {
+	private static final int SIZE = 4, NX = 8, NY = 12, MIN_X = 16, CELL_SIZE = 32, VERTICES = 48;
+	
+	private final TriangleIndex m_index = Terrains.index(Terrains.grid(20, 7, 5));
+	
+	@Test
+	public void roundTrip() throws IOException {
+		final byte[] data = write(m_index);
+		final TriangleIndex index = read(data);
+		
+		assertEquals(m_index.size(), index.size());
+		assertEquals(query(m_index), query(index));
+		assertArrayEquals(data, write(index));
+	}
+	
+	@Test
+	public void corruptHeader() throws IOException {
+		final byte[] data = write(m_index);
+		
+		assertRejected(putInt(data, SIZE, -1));
+		assertRejected(putInt(data, SIZE, Integer.MAX_VALUE));
+		assertRejected(putInt(data, NX, 0));
+		assertRejected(putInt(putInt(data, NX, 1 << 16), NY, 1 << 16));
+		assertRejected(putDouble(data, MIN_X, Double.NaN));
+		assertRejected(putDouble(data, CELL_SIZE, 0));
+		assertRejected(putInt(data, SIZE, m_index.size() + 1));
+	}
+	
+	@Test
+	public void corruptCells() throws IOException {
+		final byte[] data = write(m_index);
+		final int cellStart = VERTICES + 72*m_index.size();
+		
+		assertRejected(putInt(data, cellStart, 1));
+		assertRejected(putInt(data, cellStart + 4, m_index.size() + 1));
+		assertRejected(putInt(data, data.length - 4, -1));
+		assertRejected(Arrays.copyOf(data, data.length - 1));
+	}
+	
+	private static String query(TriangleIndex index) {
+		final StringBuilder sb = new StringBuilder();
+		
+		index.queryRadius(Terrains.X0 + 200, Terrains.Y0 + 250, 150, (t) -> sb.append(t).append(' '));
+		return sb.toString();
+	}
+	
+	private static byte[] write(TriangleIndex index) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			index.write(out);
+		}
+		return bytes.toByteArray();
+	}
+	
+	private static TriangleIndex read(byte[] data) throws IOException {
+		return TriangleIndex.read(new DataInputStream(new ByteArrayInputStream(data)));
+	}
+	
+	private static void assertRejected(byte[] data) {
+		try {
+			read(data);
+			fail("corrupt index accepted");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+	
+	private static byte[] putInt(byte[] data, int offset, int value) {
+		final byte[] copy = data.clone();
+		
+		ByteBuffer.wrap(copy).putInt(offset, value);
+		return copy;
+	}
+	
+	private static byte[] putDouble(byte[] data, int offset, double value) {
+		final byte[] copy = data.clone();
+		
+		ByteBuffer.wrap(copy).putDouble(offset, value);
+		return copy;
+	}
+}
@@ -0,0 +1,104 @@
+package tsm_alg.ex02;
+
+import static org.junit.Assert.assertTrue;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+/**
+ * Compares Viewshed with a brute-force line of sight test of each grid point.
+ * Viewshed approximates projected edges by chords, hence points grazing the terrain may differ:
+ * their clearance must be within a small tolerance and their number must be small.
+ */
+public class ViewshedTest {
+	private static final int N = 100;
+	private static final double TOLERANCE = 0.002*Main.Y_SCALE;	// tolerance of the clearance slope in projected units
+	
+	private final GridTerrain m_grid = GridTerrain.create(Terrains.grid(N, 4, 5));
+	
+	@Test
+	public void lineOfSight() {
+		for (double eye: new double[] { 1.8, 20, 200 }) {
+			for (double[] uv: new double[][] { { 0.43, 0.57 }, { 0.1, 0.2 }, { 0.5, 0.5 } }) {
+				final double x = Terrains.X0 + uv[0]*(N - 1)*Terrains.CELL_SIZE + 3;
+				final double y = Terrains.Y0 + uv[1]*(N - 1)*Terrains.CELL_SIZE + 5;
+				final Coordinate vp = new Coordinate(x, y, height(x, y) + eye);
+				
+				assertViewshed(vp, 1e9);
+				assertViewshed(vp, 800);
+			}
+		}
+	}
+	
+	private void assertViewshed(Coordinate vp, double radius) {
+		final BitSet visible = Viewshed.compute(m_grid, vp, radius);
+		int points = 0, differences = 0;
+		
+		for (int j = 0; j < N; j++) {
+			for (int i = 0; i < N; i++) {
+				final double x = m_grid.getX(i), y = m_grid.getY(j);
+				final boolean v = visible.get(j*N + i);
+				
+				if (Math.hypot(x - vp.x, y - vp.y) > radius) {
+					assertTrue("visible beyond radius", !v);
+				} else {
+					final double m = clearance(vp, i, j);
+					
+					points++;
+					if (v != (m >= 0)) {
+						differences++;
+						assertTrue("clearance " + m + " of grid point " + i + ", " + j, Math.abs(m) <= TOLERANCE);
+					}
+				}
+			}
+		}
+		assertTrue(differences + " of " + points + " grid points differ", differences <= points/200);
+	}
+	
+	/**
+	 * Exact line of sight: the terrain is piecewise linear along the sight line with breakpoints at the crossings of
+	 * grid lines and cell diagonals, hence the sight line is blocked if the terrain is above it at one of these breakpoints
+	 * 
+	 * @return minimal slope of the sight line above the terrain in projected units: negative if the point is hidden
+	 */
+	private double clearance(Coordinate vp, int i, int j) {
+		double m = Double.POSITIVE_INFINITY;
+		final double cs = m_grid.getCellSize();
+		final double u0 = (vp.x - m_grid.getX(0))/cs, v0 = (vp.y - m_grid.getY(0))/cs;
+		final double du = i - u0, dv = j - v0;
+		final double z1 = m_grid.getHeight(i, j);
+		
+		// grid lines u = const, v = const and diagonals u - v = const
+		final double[][] families = { { du, u0 }, { dv, v0 }, { du - dv, u0 - v0 } };
+		for (double[] f: families) {
+			final double d = f[0], c0 = f[1];
+			if (d == 0) continue;
+			
+			final double lo = Math.min(c0, c0 + d), hi = Math.max(c0, c0 + d);
+			for (double c = Math.ceil(lo); c <= hi; c++) {
+				final double t = (c - c0)/d;
+				if (t <= 0 || t >= 1) continue;
+				
+				final double px = vp.x + t*du*cs, py = vp.y + t*dv*cs;
+				m = Math.min(m, Main.Y_SCALE*(vp.z + t*(z1 - vp.z) - height(px, py))/(t*Math.hypot(du, dv)*cs));
+			}
+		}
+		return m;
+	}
+	
+	/**
+	 * Terrain height at (x, y): cell (i, j) consists of the triangles a-b-d and a-d-c, see GridTerrain.computeChains
+	 */
+	private double height(double x, double y) {
+		final double cs = m_grid.getCellSize();
+		final double fx = (x - m_grid.getX(0))/cs, fy = (y - m_grid.getY(0))/cs;
+		final int i = Math.min(N - 2, Math.max(0, (int)Math.floor(fx))), j = Math.min(N - 2, Math.max(0, (int)Math.floor(fy)));
+		final double u = fx - i, v = fy - j;
+		final double za = m_grid.getHeight(i, j), zb = m_grid.getHeight(i + 1, j);
+		final double zc = m_grid.getHeight(i, j + 1), zd = m_grid.getHeight(i + 1, j + 1);
+		
+		return (u >= v) ? za + u*(zb - za) + v*(zd - zb) : za + v*(zc - za) + u*(zd - zc);
+	}
+}
@@ -0,0 +1,113 @@
+package tsm_alg.helpers;
+
+import com.vividsolutions.jts.algorithm.CGAlgorithms;
+import com.vividsolutions.jts.algorithm.RobustLineIntersector;
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.util.Random;
+
+/**
+ * Compares Predicates with the corresponding JTS calls: agreement of the results and running times.
+ * Random inputs are decided by the floating-point filter, nearly collinear inputs need the exact stages.
+ */
+public class PredicatesBenchmark {
+	private static final int N = 1 << 16;
+	private static final int WARMUPS = 5, RUNS = 10;
+
+	private static volatile long s_sink;	// prevents dead code elimination
+
+	public static void main(String[] args) {
+		final Random rnd = new Random(1);
+		final Coordinate[] random = new Coordinate[N + 3];
+		final Coordinate[] collinear = new Coordinate[N + 3];
+
+		for (int i = 0; i < random.length; i++) {
+			random[i] = new Coordinate(677000 + 50000*rnd.nextDouble(), 240000 + 50000*rnd.nextDouble());
+
+			// points on a line with slope 1/3, shifted by at most a few ulps
+			final double t = rnd.nextDouble();
+			collinear[i] = new Coordinate(0.5 + t, 0.5 + t/3 + (rnd.nextInt(5) - 2)*Math.ulp(1.0));
+		}
+
+		checkOrientation("random", random);
+		checkOrientation("nearly collinear", collinear);
+		checkIntersection(random);
+
+		System.out.println();
+		for (Coordinate[] pts: new Coordinate[][] { random, collinear }) {
+			final String name = (pts == random) ? "random" : "nearly collinear";
+
+			System.out.printf("orientation %-17s Predicates: %7.2f ns, JTS: %7.2f ns%n", name,
+				time(() -> predicatesOrientation(pts)), time(() -> jtsOrientation(pts)));
+		}
+		System.out.printf("intersection %-16s Predicates: %7.2f ns, JTS: %7.2f ns%n", "random",
+			time(() -> predicatesIntersection(random)), time(() -> jtsIntersection(random)));
+	}
+
+	private static void checkOrientation(String name, Coordinate[] pts) {
+		int differences = 0, collinear = 0;
+
+		for (int i = 0; i < N; i++) {
+			final int o = Predicates.orientationIndex(pts[i], pts[i + 1], pts[i + 2]);
+
+			if (o != CGAlgorithms.orientationIndex(pts[i], pts[i + 1], pts[i + 2])) differences++;
+			if (o == 0) collinear++;
+		}
+		System.out.println("orientation " + name + ": " + differences + " differences, " + collinear + " collinear");
+	}
+
+	private static void checkIntersection(Coordinate[] pts) {
+		final RobustLineIntersector rli = new RobustLineIntersector();
+		int cnt = 0;
+		double maxError = 0;
+
+		for (int i = 0; i < N; i++) {
+			rli.computeIntersection(pts[i], pts[i + 1], pts[i + 2], pts[i + 3]);
+			if (rli.isProper()) {
+				maxError = Math.max(maxError, Predicates.intersection(pts[i], pts[i + 1], pts[i + 2], pts[i + 3]).distance(rli.getIntersection(0)));
+				cnt++;
+			}
+		}
+		System.out.println("intersection: " + cnt + " proper intersections, max distance to JTS = " + maxError);
+	}
+
+	/**
+	 * @return average time per call in ns
+	 */
+	private static double time(Runnable r) {
+		for (int i = 0; i < WARMUPS; i++) r.run();
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) r.run();
+		return (double)(System.nanoTime() - start)/RUNS/N;
+	}
+
+	private static void predicatesOrientation(Coordinate[] pts) {
+		long sum = 0;
+		for (int i = 0; i < N; i++) sum += Predicates.orientationIndex(pts[i], pts[i + 1], pts[i + 2]);
+		s_sink += sum;
+	}
+
+	private static void jtsOrientation(Coordinate[] pts) {
+		long sum = 0;
+		for (int i = 0; i < N; i++) sum += CGAlgorithms.orientationIndex(pts[i], pts[i + 1], pts[i + 2]);
+		s_sink += sum;
+	}
+
+	private static void predicatesIntersection(Coordinate[] pts) {
+		double sum = 0;
+		for (int i = 0; i < N; i++) sum += Predicates.intersection(pts[i], pts[i + 1], pts[i + 2], pts[i + 3]).x;
+		s_sink += (long)sum;
+	}
+
+	private static void jtsIntersection(Coordinate[] pts) {
+		final RobustLineIntersector rli = new RobustLineIntersector();
+		double sum = 0;
+
+		for (int i = 0; i < N; i++) {
+			rli.computeIntersection(pts[i], pts[i + 1], pts[i + 2], pts[i + 3]);
+			if (rli.hasIntersection()) sum += rli.getIntersection(0).x;
+		}
+		s_sink += (long)sum;
+	}
+}